@@ -0,0 +1,210 @@
+package com.billooms.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare two JMH results (CSV format) and fail if any benchmark got slower.
+ * Usage: CompareResults baseline.csv result.csv [threshold]
+ * where threshold is how much slower a benchmark can get (0.10 = 10%).
+ * Benchmarks are matched by name and parameters. Scores that are within the
+ * error of both runs are not counted as slower.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class CompareResults {
+	/** Default for how much slower a benchmark can get (currently set to 0.10) */
+	public final static double DEFAULT_THRESHOLD = 0.10;
+
+	private CompareResults() {
+	}
+
+	/**
+	 * Compare two results and exit with 1 if any benchmark got slower.
+	 * @param args baseline file, result file, and optional threshold
+	 * @throws IOException if a file can't be read
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: CompareResults baseline.csv result.csv [threshold]");
+			System.exit(2);
+		}
+		double threshold = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+		Map<String, Score> base = read(new File(args[0]));
+		Map<String, Score> now = read(new File(args[1]));
+		int slower = 0;
+		for (Map.Entry<String, Score> e : now.entrySet()) {
+			Score b = base.get(e.getKey());
+			if (b == null) {
+				System.out.println("NEW      " + e.getKey() + "  " + e.getValue());
+				continue;
+			}
+			Score n = e.getValue();
+			double change = n.slowerThan(b);
+			String tag = "";
+			if ((change > threshold) && !n.overlaps(b)) {
+				tag = "SLOWER";
+				slower++;
+			} else if ((change < -threshold) && !n.overlaps(b)) {
+				tag = "FASTER";
+			}
+			System.out.println(String.format("%-8s %s  %s -> %s (%+.1f%%)", tag, e.getKey(), b, n, 100.0 * change));
+		}
+		System.out.println(slower + " of " + now.size() + " benchmarks are more than "
+				+ String.format("%.0f%%", 100.0 * threshold) + " slower");
+		if (slower > 0) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Read a JMH result in CSV format.
+	 * @param file result file
+	 * @return scores by benchmark name and parameters (in the order of the file)
+	 * @throws IOException if the file can't be read
+	 */
+	private static Map<String, Score> read(File file) throws IOException {
+		Map<String, Score> scores = new LinkedHashMap<String, Score>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		try {
+			String line = in.readLine();
+			if (line == null) {
+				return scores;
+			}
+			List<String> header = split(line);
+			int iName = header.indexOf("Benchmark");
+			int iMode = header.indexOf("Mode");
+			int iScore = header.indexOf("Score");
+			int iError = header.indexOf("Score Error (99.9%)");
+			int iUnit = header.indexOf("Unit");
+			if ((iName < 0) || (iMode < 0) || (iScore < 0) || (iUnit < 0)) {
+				throw new IOException(file + " is not a JMH result in CSV format");
+			}
+			while ((line = in.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+				List<String> cols = split(line);
+				StringBuilder key = new StringBuilder(cols.get(iName));
+				for (int i = 0; i < header.size(); i++) {
+					if (header.get(i).startsWith("Param: ") && (i < cols.size())) {
+						key.append(' ').append(header.get(i).substring(7)).append('=').append(cols.get(i));
+					}
+				}
+				double error = (iError < 0) ? 0.0 : parse(cols.get(iError));
+				scores.put(key.toString(), new Score(cols.get(iMode), parse(cols.get(iScore)), error, cols.get(iUnit)));
+			}
+		} finally {
+			in.close();
+		}
+		return scores;
+	}
+
+	/**
+	 * Split a line of CSV into columns. Quotes are removed.
+	 * @param line line of CSV
+	 * @return columns
+	 */
+	private static List<String> split(String line) {
+		List<String> cols = new ArrayList<String>();
+		StringBuilder col = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '"') {
+				if (quoted && (i + 1 < line.length()) && (line.charAt(i + 1) == '"')) {
+					col.append('"');		// "" inside quotes
+					i++;
+				} else {
+					quoted = !quoted;
+				}
+			} else if ((c == ',') && !quoted) {
+				cols.add(col.toString());
+				col.setLength(0);
+			} else {
+				col.append(c);
+			}
+		}
+		cols.add(col.toString());
+		return cols;
+	}
+
+	/**
+	 * Parse a number that might be NaN or missing.
+	 * @param s number
+	 * @return value, 0.0 if it isn't a number
+	 */
+	private static double parse(String s) {
+		try {
+			double d = Double.parseDouble(s.trim());
+			return Double.isNaN(d) ? 0.0 : d;
+		} catch (NumberFormatException e) {
+			return 0.0;
+		}
+	}
+
+	/**
+	 * The score of one benchmark.
+	 */
+	private static class Score {
+		final String mode;
+		final double score;
+		final double error;
+		final String unit;
+
+		Score(String mode, double score, double error, String unit) {
+			this.mode = mode;
+			this.score = score;
+			this.error = error;
+			this.unit = unit;
+		}
+
+		/**
+		 * Get how much slower this is than another score.
+		 * For throughput a higher score is faster, and for the other modes (times) a lower score is faster.
+		 * @param base score to compare with
+		 * @return fraction slower (negative if faster)
+		 */
+		double slowerThan(Score base) {
+			if ((base.score == 0.0) || (score == 0.0)) {
+				return 0.0;
+			}
+			if ("thrpt".equals(mode)) {
+				return base.score / score - 1.0;
+			}
+			return score / base.score - 1.0;
+		}
+
+		/**
+		 * Determine if the error bars of two scores overlap.
+		 * @param other other score
+		 * @return true if the difference could be noise
+		 */
+		boolean overlaps(Score other) {
+			return Math.abs(score - other.score) <= error + other.error;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%.3f +/- %.3f %s", score, error, unit);
+		}
+	}
+}
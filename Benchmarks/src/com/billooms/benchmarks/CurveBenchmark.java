@@ -0,0 +1,91 @@
+package com.billooms.benchmarks;
+
+import com.billooms.drawables.Curve;
+import com.billooms.drawables.FittedCurve;
+import com.billooms.drawables.PointList;
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for offsetting and measuring a Curve.
+ * The offset removes loops and then filters out kinks, so both are included.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurveBenchmark {
+	@Param({"3", "50", "500", "5000"})
+	public int dots;
+
+	@Param({"0.001", "0.01", "0.1"})
+	public double resolution;
+
+	@Param({"0.05", "0.1", "0.5"})
+	public double thickness;
+
+	private Curve curve;
+
+	@Setup
+	public void setUp() {
+		FittedCurve fc = new FittedCurve();
+		fc.setSampling(FittedCurve.Sampling.ARC_LENGTH);
+		fc.insertPts(Shapes.bowl(dots));
+		curve = new Curve(fc.getCurvePointList(resolution).copy(), Color.BLACK);
+	}
+
+	/**
+	 * Offset the curve, returned as an array of Point2D.
+	 * @return offset points
+	 */
+	@Benchmark
+	public Point2D.Double[] ptsOffset() {
+		return curve.ptsOffset(thickness);
+	}
+
+	/**
+	 * Offset the curve.
+	 * @return offset points
+	 */
+	@Benchmark
+	public PointList offsetPointList() {
+		return curve.offsetPointList(thickness);
+	}
+
+	/**
+	 * Measure the length of the curve.
+	 * @return length
+	 */
+	@Benchmark
+	public double getLength() {
+		return curve.getLength();
+	}
+}
@@ -0,0 +1,99 @@
+package com.billooms.benchmarks;
+
+import com.billooms.drawables.FittedCurve;
+import com.billooms.drawables.PointList;
+import com.billooms.drawables.Pt;
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for fitting and sampling a FittedCurve.
+ * The control points are made inside getCurvePoints, so fitAll includes makeControlPts.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FittedCurveBenchmark {
+	@Param({"3", "50", "500", "5000"})
+	public int dots;
+
+	@Param({"0.001", "0.01", "0.1"})
+	public double resolution;
+
+	@Param({"CHORD", "ARC_LENGTH", "ADAPTIVE"})
+	public String sampling;
+
+	private FittedCurve curve;
+	private Pt dragged;			// dot in the middle that is moved by drag
+	private double x0;			// where the dragged dot started
+	private boolean flip = false;
+
+	@Setup
+	public void setUp() {
+		curve = new FittedCurve();
+		curve.setSampling(FittedCurve.Sampling.valueOf(sampling));
+		curve.insertPts(Shapes.bowl(dots));
+		dragged = curve.getPt(dots / 2);
+		x0 = dragged.getX();
+	}
+
+	/**
+	 * Fit and sample the whole curve.
+	 * The resolution changes a tiny bit each time so that nothing is reused.
+	 * @return points
+	 */
+	@Benchmark
+	public PointList fitAll() {
+		flip = !flip;
+		return curve.getCurvePointList(flip ? resolution : resolution * (1.0 + 1.0e-9));
+	}
+
+	/**
+	 * Fit and sample the whole curve, returned as an array of Point2D.
+	 * @return points
+	 */
+	@Benchmark
+	public Point2D.Double[] getCurvePoints() {
+		flip = !flip;
+		return curve.getCurvePoints(flip ? resolution : resolution * (1.0 + 1.0e-9));
+	}
+
+	/**
+	 * Move one dot and sample the curve again, as while dragging.
+	 * @return points
+	 */
+	@Benchmark
+	public PointList drag() {
+		flip = !flip;
+		dragged.setPos(new Point2D.Double(flip ? x0 + 0.001 : x0, dragged.getY()));
+		return curve.getCurvePointList(resolution);
+	}
+}
@@ -0,0 +1,113 @@
+package com.billooms.benchmarks;
+
+import com.billooms.drawables.Pt;
+import com.billooms.outline.api.Outline;
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+import org.openide.util.Lookup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for updating the curves of the Outline after a change.
+ * Each change updates the dot curve and then the inside and outside curves.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutlineBenchmark {
+	@Param({"3", "50", "500", "5000"})
+	public int dots;
+
+	@Param({"0.001", "0.01", "0.1"})
+	public double resolution;
+
+	@Param({"0.05", "0.1", "0.5"})
+	public double thickness;
+
+	private Outline outline;
+	private Point2D.Double[] pts;
+	private Pt dragged;			// dot in the middle that is moved by drag
+	private double x0;			// where the dragged dot started
+	private boolean flip = false;
+
+	@Setup
+	public void setUp() {
+		outline = Lookup.getDefault().lookup(Outline.class);
+		pts = Shapes.bowl(dots);
+		outline.setResolution(resolution);
+		outline.setThickness(thickness);
+		outline.setPoints(pts);
+		dragged = outline.getDotCurve().getPt(dots / 2);
+		x0 = dragged.getX();
+	}
+
+	/**
+	 * Change the thickness, which offsets the whole curve again.
+	 * @return number of outside points
+	 */
+	@Benchmark
+	public int thickness() {
+		flip = !flip;
+		outline.setThickness(flip ? thickness : thickness + 1.0e-6);
+		return outline.getOutsideCurve().getSize();
+	}
+
+	/**
+	 * Change the resolution, which samples and offsets the whole curve again.
+	 * @return number of outside points
+	 */
+	@Benchmark
+	public int resolution() {
+		flip = !flip;
+		outline.setResolution(flip ? resolution : resolution * (1.0 + 1.0e-9));
+		return outline.getOutsideCurve().getSize();
+	}
+
+	/**
+	 * Move one dot, as while dragging.
+	 * @return number of outside points
+	 */
+	@Benchmark
+	public int drag() {
+		flip = !flip;
+		dragged.setPos(new Point2D.Double(flip ? x0 + 0.001 : x0, dragged.getY()));
+		return outline.getOutsideCurve().getSize();
+	}
+
+	/**
+	 * Replace all the dots.
+	 * @return number of outside points
+	 */
+	@Benchmark
+	public int setPoints() {
+		outline.setPoints(pts);
+		return outline.getOutsideCurve().getSize();
+	}
+}
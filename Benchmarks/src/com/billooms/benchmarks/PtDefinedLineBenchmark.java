@@ -0,0 +1,76 @@
+package com.billooms.benchmarks;
+
+import com.billooms.drawables.FittedCurve;
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for inserting dots in a PtDefinedLine (sorted by height).
+ * The dots are in a random order, and each benchmark fills an empty curve.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PtDefinedLineBenchmark {
+	@Param({"3", "50", "500", "5000"})
+	public int dots;
+
+	private Point2D.Double[] pts;
+
+	@Setup
+	public void setUp() {
+		pts = Shapes.shuffledBowl(dots);
+	}
+
+	/**
+	 * Insert the dots one at a time.
+	 * @return filled curve
+	 */
+	@Benchmark
+	public FittedCurve insertPt() {
+		FittedCurve curve = new FittedCurve();
+		for (Point2D.Double p : pts) {
+			curve.insertPt(p);
+		}
+		return curve;
+	}
+
+	/**
+	 * Insert all the dots at once.
+	 * @return filled curve
+	 */
+	@Benchmark
+	public FittedCurve insertPts() {
+		FittedCurve curve = new FittedCurve();
+		curve.insertPts(pts);
+		return curve;
+	}
+}
@@ -0,0 +1,68 @@
+package com.billooms.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.Random;
+
+/**
+ * Inputs for the benchmarks.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class Shapes {
+	/** Height of the bowl in inches */
+	final static double HEIGHT = 4.0;
+	/** Seed for the random numbers, so every run has the same inputs */
+	private final static long SEED = 20111L;
+
+	private Shapes() {
+	}
+
+	/**
+	 * Get the dots for a bowl, bottom first and top last.
+	 * The bowl flares out from the foot and turns in a little at the rim,
+	 * with a small random wobble like dots that were placed by hand.
+	 * @param n number of dots (at least 2)
+	 * @return dots in inches
+	 */
+	static Point2D.Double[] bowl(int n) {
+		Random r = new Random(SEED);
+		Point2D.Double[] pts = new Point2D.Double[n];
+		double wobble = 0.1 / n;
+		for (int i = 0; i < n; i++) {
+			double s = (double) i / (n - 1);
+			double x = 1.0 + 2.5 * Math.sin(0.6 * Math.PI * s) + wobble * r.nextGaussian();
+			double y = HEIGHT * s;
+			pts[i] = new Point2D.Double(x, y);
+		}
+		return pts;
+	}
+
+	/**
+	 * Get the same dots as bowl() in a random order.
+	 * @param n number of dots (at least 2)
+	 * @return dots in inches
+	 */
+	static Point2D.Double[] shuffledBowl(int n) {
+		Point2D.Double[] pts = bowl(n);
+		Random r = new Random(SEED);
+		for (int i = n - 1; i > 0; i--) {
+			int j = r.nextInt(i + 1);
+			Point2D.Double tmp = pts[i];
+			pts[i] = pts[j];
+			pts[j] = tmp;
+		}
+		return pts;
+	}
+}
@@ -0,0 +1,104 @@
+package com.billooms.view3dmodel;
+
+import com.billooms.drawables.PointList;
+import com.billooms.outline.api.Outline;
+import java.beans.PropertyChangeEvent;
+import java.util.concurrent.TimeUnit;
+import javax.media.j3d.Material;
+import org.openide.util.Lookup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for rebuilding the shapes of a Bowl.
+ * No Canvas3D is made, so no graphics card is needed. But Java3D checks for a display
+ * as soon as a shape gets its geometry, so these need an X server (Xvfb is enough).
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BowlBenchmark {
+	@Param({"50", "500", "5000"})
+	public int points;
+
+	@Param({"36", "360", "1440"})
+	public int sectors;
+
+	private PointList pts;
+	private LatheShape3D shape;
+	private Bowl bowl;
+	private PropertyChangeEvent change;
+	private boolean flip = false;
+
+	@Setup
+	public void setUp() {
+		pts = LatheShape3DBenchmark.profile(points);
+		shape = new LatheShape3D(pts, sectors, new Material());
+		Outline outline = Lookup.getDefault().lookup(Outline.class);
+		outline.setResolution(outline.getOutsideLength() / points);		// about the same number of points
+		bowl = new Bowl();
+		bowl.setSectors(sectors);
+		bowl.waitForBuild();
+		change = new PropertyChangeEvent(outline, Outline.PROP_THICKNESS, null, null);
+	}
+
+	/**
+	 * Remake the mesh in the same geometry.
+	 * @return shape
+	 */
+	@Benchmark
+	public LatheShape3D makeGeom() {
+		shape.makeGeom(pts, sectors);
+		return shape;
+	}
+
+	/**
+	 * Remake the mesh with a different number of sectors each time,
+	 * so a new geometry is made each time.
+	 * @return shape
+	 */
+	@Benchmark
+	public LatheShape3D makeGeomNewGeometry() {
+		flip = !flip;
+		shape.makeGeom(pts, flip ? sectors : sectors + 1);
+		return shape;
+	}
+
+	/**
+	 * Remake the inside and outside shapes of the bowl after an outline change,
+	 * and wait for the background build to finish.
+	 * @return bowl
+	 */
+	@Benchmark
+	public Bowl makeInOut() {
+		bowl.propertyChange(change);
+		bowl.waitForBuild();
+		return bowl;
+	}
+}
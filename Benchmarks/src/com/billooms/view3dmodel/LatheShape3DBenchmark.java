@@ -0,0 +1,134 @@
+package com.billooms.view3dmodel;
+
+import com.billooms.drawables.PointList;
+import java.awt.geom.Point2D;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.media.j3d.IndexedTriangleStripArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for each step of making the mesh of a LatheShape3D.
+ * None of these need a display, so they can run on a headless machine.
+ * (This is in the same package as LatheShape3D so that it can call each step.)
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatheShape3DBenchmark {
+	@Param({"50", "500", "5000"})
+	public int points;
+
+	@Param({"36", "360", "1440"})
+	public int sectors;
+
+	private PointList pts;
+	private LatheShape3D.SectorTable table;
+	private float[] coords;
+	private float[] normals;
+	private int[] indices;
+	private int nVerts;
+	private int nIndices;
+
+	@Setup
+	public void setUp() {
+		pts = profile(points);
+		table = LatheShape3D.SectorTable.get(sectors);
+		nVerts = 1 + sectors + points * sectors;
+		nIndices = 2 * sectors + 1 + (points - 1) * 2 * (sectors + 1);
+		coords = new float[3 * nVerts];
+		normals = new float[3 * nVerts];
+		indices = new int[nIndices];
+		LatheShape3D.makeIndices(points, sectors, indices);
+	}
+
+	/**
+	 * Get the profile of a bowl, bottom first and top last.
+	 * @param n number of points (at least 2)
+	 * @return points in inches
+	 */
+	static PointList profile(int n) {
+		Point2D.Double[] p = new Point2D.Double[n];
+		for (int i = 0; i < n; i++) {
+			double s = (double) i / (n - 1);
+			p[i] = new Point2D.Double(1.0 + 2.5 * Math.sin(0.6 * Math.PI * s), 4.0 * s);
+		}
+		return new PointList(p);
+	}
+
+	/**
+	 * Make the coordinates.
+	 * @return coordinates
+	 */
+	@Benchmark
+	public float[] coords() {
+		LatheShape3D.makeCoords(pts, table, coords);
+		return coords;
+	}
+
+	/**
+	 * Make the normals.
+	 * @return normals
+	 */
+	@Benchmark
+	public float[] normals() {
+		LatheShape3D.makeNormals(pts, table, normals);
+		return normals;
+	}
+
+	/**
+	 * Make the strip indices.
+	 * @return indices
+	 */
+	@Benchmark
+	public int[] indices() {
+		LatheShape3D.makeIndices(points, sectors, indices);
+		return indices;
+	}
+
+	/**
+	 * Make new direct buffers and a geometry that uses them by reference,
+	 * then copy the coordinates, normals, and indices in.
+	 * @return geometry
+	 */
+	@Benchmark
+	public IndexedTriangleStripArray geometryArray() {
+		FloatBuffer coordBuf = ByteBuffer.allocateDirect(4 * 3 * nVerts).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		FloatBuffer normalBuf = ByteBuffer.allocateDirect(4 * 3 * nVerts).order(ByteOrder.nativeOrder()).asFloatBuffer();
+		int[] indexRef = new int[nIndices];
+		IndexedTriangleStripArray ga = LatheShape3D.makeGeometryArray(nVerts, nIndices, sectors, coordBuf, normalBuf, indexRef);
+		coordBuf.put(coords, 0, 3 * nVerts);
+		normalBuf.put(normals, 0, 3 * nVerts);
+		System.arraycopy(indices, 0, indexRef, 0, nIndices);
+		return ga;
+	}
+}
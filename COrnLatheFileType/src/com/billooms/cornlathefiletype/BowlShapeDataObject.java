@@ -1,6 +1,8 @@
 
 package com.billooms.cornlathefiletype;
 
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import com.billooms.outline.api.Outline;
 import com.billooms.outlineeditor.OutlineEditPanel;
 import java.io.File;
@@ -44,6 +46,7 @@ import org.w3c.dom.Element;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 public class BowlShapeDataObject extends MultiDataObject {
+	private final static Metrics METRICS = MetricsLookup.getDefault();
 
 	private InstanceContent ic = new InstanceContent();
 	private Lookup lookup = new AbstractLookup(ic);
@@ -81,6 +84,7 @@ public class BowlShapeDataObject extends MultiDataObject {
 	private class Opener implements OpenCookie {
 		@Override
 		public void open() {
+			Metrics.Timer timer = METRICS.start(Metrics.FILE_LOAD);
 			Document xmldoc;
 			File file = FileUtil.toFile(getPrimaryFile());
 			try {
@@ -105,6 +109,7 @@ public class BowlShapeDataObject extends MultiDataObject {
 						NotifyDescriptor.ERROR_MESSAGE);
 				DialogDisplayer.getDefault().notify(d);
 			}
+			timer.stop(outline.getNumPts(), outline.getResolution(), outline.getThickness(), 0);
 //			enableOpenAction(false);		// not sure why you would want this here
 		}
 	}
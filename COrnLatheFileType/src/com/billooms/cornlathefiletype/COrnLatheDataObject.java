@@ -1,6 +1,8 @@
 
 package com.billooms.cornlathefiletype;
 
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import com.billooms.outline.api.Outline;
 import com.billooms.outlineeditor.OutlineEditPanel;
 import java.beans.PropertyChangeEvent;
@@ -48,6 +50,7 @@ import org.w3c.dom.Element;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 public class COrnLatheDataObject extends MultiDataObject implements PropertyChangeListener {
+	private final static Metrics METRICS = MetricsLookup.getDefault();
 
 	private InstanceContent ic = new InstanceContent();
 	private Lookup lookup = new AbstractLookup(ic);
@@ -120,6 +123,7 @@ public class COrnLatheDataObject extends MultiDataObject implements PropertyChan
 	private class Saver implements SaveCookie {
 		@Override
 		public void save() throws IOException {
+			Metrics.Timer timer = METRICS.start(Metrics.FILE_SAVE);
 			PrintWriter out;
 			File file = FileUtil.toFile(getPrimaryFile());
 			try {
@@ -161,6 +165,7 @@ public class COrnLatheDataObject extends MultiDataObject implements PropertyChan
 			} finally {
 				out.close();
 			}
+			timer.stop(outline.getNumPts(), outline.getResolution(), outline.getThickness(), 0);
 			enableSaveAction(false);
 		}
 
@@ -186,6 +191,7 @@ public class COrnLatheDataObject extends MultiDataObject implements PropertyChan
 	private class Opener implements OpenCookie {
 		@Override
 		public void open() {
+			Metrics.Timer timer = METRICS.start(Metrics.FILE_LOAD);
 			Document xmldoc;
 			File file = FileUtil.toFile(getPrimaryFile());
 			try {
@@ -216,6 +222,7 @@ public class COrnLatheDataObject extends MultiDataObject implements PropertyChan
 						NotifyDescriptor.ERROR_MESSAGE);
 				DialogDisplayer.getDefault().notify(d);
 			}
+			timer.stop(outline.getNumPts(), outline.getResolution(), outline.getThickness(), 0);
 			enableSaveAction(false);		// Just read it in
 //			enableOpenAction(false);		// not sure why you would want this here
 		}
@@ -1,16 +1,19 @@
 package com.billooms.drawables;
 
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.GeneralPath;
 import java.awt.geom.Point2D;
-import java.util.ArrayList;
 import javax.vecmath.Vector2d;
 
 /**
  * A curve defined by an array of points.
- * Points are ordered, bottom first and top last
+ * Points are ordered, bottom first and top last.
+ * The points are kept as packed coordinates in a PointList, 
+ * and Point2D.Double objects are only made when a caller asks for them
  * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
  * 
  * This program is free software: you can redistribute it and/or modify
@@ -28,9 +31,18 @@ import javax.vecmath.Vector2d;
  */
 public class Curve extends Shape {
 	private final static double FILTER_ANGLE = 1.01*(Math.PI/2.0);	// a bit more than 90 degrees
+	private final static double FILTER_TAN = Math.tan(Math.PI - FILTER_ANGLE);	// |cross/dot| for a turn of FILTER_ANGLE
 	private final static double EPSILON = 0.001;	// a point is equal if x & y within EPSILON
+	private final static Metrics METRICS = MetricsLookup.getDefault();
 
-	private Point2D.Double[] points;
+	private PointList points = new PointList();
+	private Point2D.Double[] pointsView = null;	// Point2D.Double view of the points (null until asked for)
+	private PointGrid grid = null;		// index of the points for finding the nearest (null until asked for)
+	private int unchangedHead = 0;		// leading points unchanged since the last ptsOffset
+	private int unchangedTail = 0;		// trailing points unchanged since the last ptsOffset
+	private final PointList raw = new PointList();	// unfiltered offset points from the last ptsOffset
+	private boolean rawValid = false;	// true if raw can be reused
+	private double rawD;				// offset amount used for raw
 
 	/**
 	 * A drawable curve defined by an array of points.
@@ -40,7 +52,7 @@ public class Curve extends Shape {
 	 */
 	public Curve(Point2D.Double[] pts, Color c, BasicStroke s) {
 		super(c, s);
-		this.points = pts;
+		setPoints(pts);
 	}
 
 	/**
@@ -50,7 +62,17 @@ public class Curve extends Shape {
 	 */
 	public Curve(Point2D.Double[] pts, Color c) {
 		super(c);
-		this.points = pts;
+		setPoints(pts);
+	}
+
+	/**
+	 * A drawable curve defined by packed points.
+	 * @param pts points (which are copied)
+	 * @param c Color
+	 */
+	public Curve(PointList pts, Color c) {
+		super(c);
+		setPoints(pts);
 	}
 
 	/**
@@ -59,7 +81,7 @@ public class Curve extends Shape {
 	 */
 	public Curve(Point2D.Double[] pts) {
 		super();
-		this.points = pts;
+		setPoints(pts);
 	}
 
     /**
@@ -68,14 +90,16 @@ public class Curve extends Shape {
      */
 	@Override
 	public void paint(Graphics2D g2d) {
-		if (points.length < 2)
+		if (points.size < 2)
 			return;
 
 		if (visible) {
-			GeneralPath polyline = new GeneralPath(GeneralPath.WIND_EVEN_ODD, points.length);
-			polyline.moveTo(points[0].x, points[0].y);
-			for (Point2D.Double pt : points) {
-				polyline.lineTo(pt.x, pt.y);
+			GeneralPath polyline = new GeneralPath(GeneralPath.WIND_EVEN_ODD, points.size);
+			double[] xs = points.xs;
+			double[] ys = points.ys;
+			polyline.moveTo(xs[0], ys[0]);
+			for (int i = 1; i < points.size; i++) {
+				polyline.lineTo(xs[i], ys[i]);
 			}
 
 			float scale = (float) g2d.getTransform().getScaleX();
@@ -95,9 +119,25 @@ public class Curve extends Shape {
 
 	/**
 	 * Get the array of Point2D.Double that defines the curve.
+	 * The Point2D.Double objects are made the first time this is called after a change, 
+	 * so use getPointList() where possible.
+	 * Changing the returned points does not change the curve.
 	 * @return array of Point2D.Double
 	 */
 	public Point2D.Double[] getPoints() {
+		if (pointsView == null) {
+			pointsView = points.toPoints();
+		}
+		return pointsView;
+	}
+
+	/**
+	 * Get the points that define the curve.
+	 * The returned array is updated when the curve changes, 
+	 * so make a copy if the points need to be kept.
+	 * @return points of the curve
+	 */
+	public PointList getPointList() {
 		return points;
 	}
 
@@ -106,7 +146,36 @@ public class Curve extends Shape {
 	 * @param pts array of Point2D.Double that defines the curve
 	 */
 	public void setPoints(Point2D.Double[] pts) {
-		this.points = pts;
+		setPoints(new PointList(pts));
+	}
+
+	/**
+	 * Set the points defining the curve.
+	 * The points are copied.
+	 * @param pts points that define the curve
+	 */
+	public void setPoints(PointList pts) {
+		points.set(pts);
+		pointsView = null;
+		grid = null;
+		rawValid = false;		// nothing can be reused for the next offset
+	}
+
+	/**
+	 * Set the points defining the curve, 
+	 * where only the points in the middle are different from the current points.
+	 * The next ptsOffset only needs to recalculate the offset near the changed points.
+	 * The points are copied.
+	 * @param pts points that define the curve
+	 * @param head number of leading points that are the same as the current points
+	 * @param tail number of trailing points that are the same as the current points
+	 */
+	public void setPoints(PointList pts, int head, int tail) {
+		points.set(pts);
+		pointsView = null;
+		grid = null;
+		this.unchangedHead = Math.min(unchangedHead, head);		// there may be several changes between offsets
+		this.unchangedTail = Math.min(unchangedTail, tail);
 	}
 
 	/**
@@ -114,14 +183,17 @@ public class Curve extends Shape {
 	 * @return the number of points
 	 */
 	public int getSize() {
-		return points.length;
+		return points.size;
 	}
 
 	/**
 	 * Clear the points associated with this curve.
 	 */
 	public void clear() {
-		this.points = new Point2D.Double[0];
+		points.clear();
+		pointsView = null;
+		grid = null;
+		rawValid = false;
 	}
 
 	/**
@@ -129,23 +201,24 @@ public class Curve extends Shape {
 	 * @return bounding box (which might not include 0.0, 0.0)
 	 */
 	public BoundingBox getBoundingBox() {
-		if (points.length == 0) {
+		if (points.size == 0) {
 			return new BoundingBox(0.0, 0.0, 0.0, 0.0);
 		}
-		Point2D.Double p0 = points[0];
-		double minX = p0.x, maxX = p0.x, minY = p0.y, maxY = p0.y;
-		for (Point2D.Double p : points) {
-			if (p.y < minY) {
-				minY = p.y;
+		double[] xs = points.xs;
+		double[] ys = points.ys;
+		double minX = xs[0], maxX = xs[0], minY = ys[0], maxY = ys[0];
+		for (int i = 1; i < points.size; i++) {
+			if (ys[i] < minY) {
+				minY = ys[i];
 			}
-			if (p.y > maxY) {
-				maxY = p.y;
+			if (ys[i] > maxY) {
+				maxY = ys[i];
 			}
-			if (p.x > maxX) {
-				maxX = p.x;
+			if (xs[i] > maxX) {
+				maxX = xs[i];
 			}
-			if (p.x < minX) {
-				minX = p.x;
+			if (xs[i] < minX) {
+				minX = xs[i];
 			}
 		}
 		return new BoundingBox(minX, minY, maxX, maxY);
@@ -156,15 +229,7 @@ public class Curve extends Shape {
 	 * @return total length
 	 */
 	public double getLength() {
-		if (points.length < 2)
-			return 0.0;
-		double length = 0.0;
-		for (int i = 0; i < points.length-1; i++) {
-			Point2D.Double p0 = points[i];
-			Point2D.Double p1 = points[i+1];
-			length += Math.hypot(p0.x - p1.x, p0.y - p1.y);
-		}
-		return length;
+		return points.getLength();
 	}
 
 	/**
@@ -184,12 +249,12 @@ public class Curve extends Shape {
 		int idx = 0;
 		if (i0 < i1) {		// points are either bottom->up or top->down (depends on order of p0,p1)
 			for (int i = i0; i <= i1; i++) {
-				pts[idx] = points[i];
+				pts[idx] = points.get(i);
 				idx++;
 			}
 		} else {
 			for (int i = i0; i >= i1; i--) {
-				pts[idx] = points[i];
+				pts[idx] = points.get(i);
 				idx++;
 			}
 		}
@@ -202,29 +267,37 @@ public class Curve extends Shape {
 	 * @return index of the nearest point on the curve (-1 if no points)
 	 */
 	private int idxOfNearestPoint(Point2D.Double pt) {
-		if (points.length == 0) 
+		if (points.size == 0) 
 			return -1;
-		if (points.length == 1) 
+		if (points.size == 1) 
 			return 0;
-		double dist = points[0].distance(pt);
-		int closeIdx = 0;
-		for (int i = 0; i < points.length; i++) {
-			Point2D.Double p = points[i];
-			if (p.distance(pt) < dist) {
-				dist = p.distance(pt);
-				closeIdx = i;
+		if (grid == null) {			// index the points the first time after they change
+			double[] xs = points.xs;
+			double[] ys = points.ys;
+			double length = 0.0;
+			for (int i = 1; i < points.size; i++) {
+				length += Math.hypot(xs[i] - xs[i-1], ys[i] - ys[i-1]);
+			}
+			double cell = 4.0 * length / (points.size - 1);		// a few points in each cell
+			grid = new PointGrid((cell > 0.0) ? cell : 1.0);
+			for (int i = 0; i < points.size; i++) {
+				grid.put(i, xs[i], ys[i]);
 			}
 		}
-		return closeIdx;
+		return grid.nearest(pt.x, pt.y);
 	}
 
 	/**
 	 * Flip the curve by changing sign of x-coordinates of all points
 	 */
 	public void flipX() {
-		for (int i = 0; i < points.length; i++) {
-			points[i].x = -points[i].x;		// change sign of x
+		double[] xs = points.xs;
+		for (int i = 0; i < points.size; i++) {
+			xs[i] = -xs[i];		// change sign of x
 		}
+		pointsView = null;
+		grid = null;
+		rawValid = false;
 		return;
 	}
 
@@ -236,7 +309,7 @@ public class Curve extends Shape {
 		if (d == 0.0) {
 			return;
 		}
-		setPoints(ptsOffset(d));
+		setPoints(offsetPointList(d));
 	}
 
 	/**
@@ -247,91 +320,122 @@ public class Curve extends Shape {
 	 * @return new array of Point2D.Double representing the points on a new curve
 	 */
 	public Point2D.Double[] ptsOffset(double d) {
-		if (points.length <= 1) {	// no offset for one point
-			return points;
-		}
+		return offsetPointList(d).toPoints();
+	}
 
-		Point2D.Double[] newPts = new Point2D.Double[points.length];
-		for (int i = 0; i < points.length; i++) {
-			int im1 = Math.max(i - 1, 0);
-			int ip1 = Math.min(i + 1, points.length - 1);
-			if (points[im1].x == points[ip1].x) {		// check for vertical
-				newPts[i] = new Point2D.Double(points[i].x + d, points[i].y);	// if vertical, move x-direction only
-//			} else if (points[im1].y == points[ip1].y) {	// check for horizontal
-//				newPts[i] = new Point2D.Double(points[i].x, points[i].y - d);	// if horizontal, move y-direction only
-			} else {
-				double theta = Math.atan2(points[ip1].y - points[im1].y, points[ip1].x - points[im1].x);
-				newPts[i] = new Point2D.Double(points[i].x + d * Math.sin(theta),
-						points[i].y - d * Math.cos(theta));
-			}
+	/**
+	 * Return the points which are offset in a perpendicular direction
+	 * from this curve by the specified amount.
+	 * The direction of the offset is to the right of the direction of the line.
+	 * Loops where the offset crosses itself are removed, then any kinks that are left.
+	 * @param d offset amount
+	 * @return new PointList representing the points on a new curve
+	 */
+	public PointList offsetPointList(double d) {
+		int n = points.size;
+		if (n <= 1) {	// no offset for one point
+			return points.copy();
 		}
-		return filter(newPts);
+		Metrics.Timer timer = METRICS.start(Metrics.PTS_OFFSET);
+		PointList newPts = offset(d);
+		timer.stop(newPts.size, 0.0, d, 0);
+		return newPts;
 	}
 
 	/**
-	 * Filter the points to delete any "kinks"
-	 * @param pts original points
-	 * @return points without "kinks"
+	 * Offset the points (there are at least 2).
+	 * @param d offset amount
+	 * @return new PointList representing the points on a new curve
 	 */
-	private Point2D.Double[] filter(Point2D.Double pts[]) {
-		if (pts.length <= 3) {	// don't bother if 3 points or less
-			return pts;
-		}
+	private PointList offset(double d) {
+		int n = points.size;
 
-		ArrayList<Point2D.Double> list = new ArrayList<Point2D.Double>();
-		int ptsCtr = 0;
-		list.add(pts[ptsCtr++]);		// first point
-		list.add(pts[ptsCtr++]);		// second point
-		int listCtr = 2;
-		double lastAngle, nextAngle;
-		do {
-			lastAngle = angle(list.get(listCtr-2), list.get(listCtr-1));
-			nextAngle = angle(list.get(listCtr-1), pts[ptsCtr], lastAngle);
-			if (Math.abs(lastAngle - nextAngle) <= FILTER_ANGLE) {
-				list.add(pts[ptsCtr++]);		// add the point
-				listCtr++;
+		double[] xs = points.xs;
+		double[] ys = points.ys;
+		int reuseHead = 0, reuseTail = 0;	// offset points that can be kept from last time
+		if (rawValid && (rawD == d)) {		// an offset point depends on its neighbors too
+			reuseHead = Math.max(0, Math.min(unchangedHead - 1, n));
+			reuseTail = Math.max(0, Math.min(unchangedTail - 1, Math.min(n, raw.size) - reuseHead));
+		}
+		raw.ensureCapacity(n);
+		double[] newX = raw.xs;
+		double[] newY = raw.ys;
+		System.arraycopy(newX, raw.size - reuseTail, newX, n - reuseTail, reuseTail);	// tail moves if the size changed
+		System.arraycopy(newY, raw.size - reuseTail, newY, n - reuseTail, reuseTail);
+		raw.size = n;
+		for (int i = reuseHead; i < n - reuseTail; i++) {
+			int im1 = Math.max(i - 1, 0);
+			int ip1 = Math.min(i + 1, n - 1);
+			if (xs[im1] == xs[ip1]) {		// check for vertical
+				newX[i] = xs[i] + d;	// if vertical, move x-direction only
+				newY[i] = ys[i];
+//			} else if (ys[im1] == ys[ip1]) {	// check for horizontal
+//				newY[i] = ys[i] - d;	// if horizontal, move y-direction only
 			} else {
-				list.remove(--listCtr);			// remove the last point
-				ptsCtr++;						// and skip the next one too
-				if (listCtr < 2) {
-					return pts;		// too much deleted, go with the unfilterd data
-				}
+				double theta = Math.atan2(ys[ip1] - ys[im1], xs[ip1] - xs[im1]);
+				newX[i] = xs[i] + d * Math.sin(theta);
+				newY[i] = ys[i] - d * Math.cos(theta);
 			}
-		} while (ptsCtr < pts.length);
-
-		return list.toArray(new Point2D.Double[list.size()]);
-	}
+		}
+		rawValid = true;		// remember for next time
+		rawD = d;
+		unchangedHead = n;
+		unchangedTail = n;
 
-	/**
-	 * Get the angle of the line between 2 points
-	 * @param p1 First point
-	 * @param p2 Second point
-	 * @return angle (radians) in the range -PI to +PI
-	 */
-	private double angle(Point2D.Double p1, Point2D.Double p2) {
-		double ang = Math.atan2(p2.y - p1.y, p2.x - p1.x);
-		return ang;
+		PointList newPts = raw.copy();
+		newPts.size = LoopRemover.removeLoops(newPts.xs, newPts.ys, n);	// cut out where the offset crosses itself
+		if (newPts.size > 3) {	// don't bother filtering if 3 points or less
+			int size = filter(newPts.xs, newPts.ys, newPts.size);	// then any kinks that are left
+			if (size >= 2) {
+				newPts.size = size;
+			} else {
+				newPts.set(raw);	// too much deleted, go with just the loops removed
+				newPts.size = LoopRemover.removeLoops(newPts.xs, newPts.ys, n);
+			}
+		}
+		return newPts;
 	}
 
 	/**
-	 * Get the angle of the line between 2 points,
-	 * but make sure that the returned angle is in a quadrant such that
-	 * the angle to the given angle is within +/- PI
-	 * @param p1 First point
-	 * @param p2 Second point
-	 * @param a
-	 * @return angle between the 2 points
+	 * Filter the points in place to delete any "kinks".
+	 * A point is deleted (and the next one skipped) where the curve turns by more than FILTER_ANGLE.
+	 * The kept points are moved to the front of the arrays, so this always takes linear time.
+	 * @param xs x-coordinates (changed)
+	 * @param ys y-coordinates (changed)
+	 * @param n number of points
+	 * @return number of points kept at the front of the arrays (less than 2 if too much was deleted)
 	 */
-	private double angle(Point2D.Double p1, Point2D.Double p2, double a) {
-		double ang = angle(p1, p2);
-		if (Math.abs(ang - a) > Math.PI) {	// check if difference is > 180
-			if (a > 0.0) {
-				ang = ang + 2.0*Math.PI;	// if first positive, then make 2nd positive
+	static int filter(double[] xs, double[] ys, int n) {
+		if (n < 2) {
+			return n;
+		}
+		int size = 2;			// first two points are always kept
+		int ptsCtr = 2;
+		while (ptsCtr < n) {
+			double ux = xs[size-1] - xs[size-2];		// direction of the last kept segment
+			double uy = ys[size-1] - ys[size-2];
+			double vx = xs[ptsCtr] - xs[size-1];		// direction to the next point
+			double vy = ys[ptsCtr] - ys[size-1];
+			if ((ux == 0.0) && (uy == 0.0)) {
+				ux = 1.0;		// no direction counts as zero angle
+			}
+			if ((vx == 0.0) && (vy == 0.0)) {
+				vx = 1.0;
+			}
+			double dot = ux * vx + uy * vy;
+			double cross = ux * vy - uy * vx;
+			if ((dot >= 0.0) || (Math.abs(cross) >= -dot * FILTER_TAN)) {	// turn no more than FILTER_ANGLE
+				xs[size] = xs[ptsCtr];		// keep the point
+				ys[size++] = ys[ptsCtr++];
 			} else {
-				ang = ang - 2.0*Math.PI;	// if first negative, then make 2nd negative
+				size--;					// remove the last point
+				ptsCtr++;				// and skip the next one too
+				if (size < 2) {
+					return size;
+				}
 			}
 		}
-		return ang;
+		return size;
 	}
 
 	/**
@@ -340,19 +444,10 @@ public class Curve extends Shape {
 	 * @return the nearest point on the curve (null if no points)
 	 */
 	public Point2D.Double nearestPoint(Point2D.Double pt) {
-		if (points.length == 0) 
+		int i = idxOfNearestPoint(pt);
+		if (i == -1) 
 			return null;
-		if (points.length == 1) 
-			return new Point2D.Double(points[0].x, points[0].y);
-		Point2D.Double closePt = points[0];
-		double dist = closePt.distance(pt);
-		for (Point2D.Double p : points) {
-			if (p.distance(pt) < dist) {
-				dist = p.distance(pt);
-				closePt = p;
-			}
-		}
-		return new Point2D.Double(closePt.x, closePt.y);	// return a copy, not the original
+		return points.get(i);	// return a copy, not the original
 	}
 
 	/**
@@ -365,22 +460,22 @@ public class Curve extends Shape {
 	 */
 	public Vector2d perpendicular(Point2D.Double p, boolean dir) {
 		Vector2d v = null;
-		if (points.length < 2) {
+		if (points.size < 2) {
 			return v;
 		}
 		int i;
-		for (i = 0; i < points.length; i++) {		// find the index of the point
-			if (aboutEqual(p, points[i])) {
+		for (i = 0; i < points.size; i++) {		// find the index of the point
+			if (aboutEqual(p, points.xs[i], points.ys[i])) {
 				break;
 			}
 		}
-		if (i >= points.length) {		// not on the curve
+		if (i >= points.size) {		// not on the curve
 			return v;
 		}
 		int im1 = Math.max(i - 1, 0);
-		int ip1 = Math.min(i + 1, points.length - 1);
-		double dx = points[ip1].x - points[im1].x;
-		double dy = points[ip1].y - points[im1].y;
+		int ip1 = Math.min(i + 1, points.size - 1);
+		double dx = points.xs[ip1] - points.xs[im1];
+		double dy = points.ys[ip1] - points.ys[im1];
 		if (dir) {
 			v = new Vector2d(dy, -dx);
 		} else {
@@ -397,10 +492,11 @@ public class Curve extends Shape {
 	/**
 	 * Compare two points to see if they are about equal (i.e. within EPSILON)
 	 * @param p0 First point
-	 * @param p1 Second point
+	 * @param x1 Second point x
+	 * @param y1 Second point y
 	 * @return true if both x and y are within EPSILON of each other
 	 */
-	private boolean aboutEqual(Point2D.Double p0, Point2D.Double p1) {
-		return ((Math.abs(p0.x - p1.x) <= EPSILON) && (Math.abs(p0.y - p1.y) <= EPSILON));
+	private boolean aboutEqual(Point2D.Double p0, double x1, double y1) {
+		return ((Math.abs(p0.x - x1) <= EPSILON) && (Math.abs(p0.y - y1) <= EPSILON));
 	}
 }
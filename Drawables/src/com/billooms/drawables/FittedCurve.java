@@ -1,13 +1,19 @@
 package com.billooms.drawables;
 
 import com.billooms.geometry.LineGeom;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.geom.GeneralPath;
 import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.vecmath.Vector2d;
+import org.openide.util.RequestProcessor;
 
 /**
  * A curve-fit curve defined by a number of points (dots).
@@ -34,16 +40,49 @@ import javax.vecmath.Vector2d;
  */
 
 public class FittedCurve extends PtDefinedLine {
+	/** Fewest new points that are sampled in parallel (currently set to 20000) */
+	public final static int PARALLEL_MIN_POINTS = 20000;
+	/** Default distance that an ADAPTIVE curve can be from its points (currently set to 0.001) */
+	public final static double DEFAULT_TOLERANCE = 0.001;
+	private final static int N_CPU = Runtime.getRuntime().availableProcessors();
+	private final static RequestProcessor RP = new RequestProcessor(FittedCurve.class.getName(), N_CPU);
+	private final static Metrics METRICS = MetricsLookup.getDefault();
+	private final static int CHANGES_KEPT = 16;	// number of resamples remembered for getUnchangedHead/Tail
+	private final static int LENGTH_STEPS = 8;		// parts of a segment that are measured separately
+	private final static int NEWTON_STEPS = 4;		// most Newton steps to find a point along a segment
+	private final static double[] GAUSS_X = {	// 5-point Gauss-Legendre nodes on [-1, 1]
+		-0.9061798459386640, -0.5384693101056831, 0.0, 0.5384693101056831, 0.9061798459386640};
+	private final static double[] GAUSS_W = {	// and their weights
+		0.2369268850561891, 0.4786286704993665, 0.5688888888888889, 0.4786286704993665, 0.2369268850561891};
+
+	/** How the points of the fit curve are spaced */
+	public static enum Sampling {
+		/** Number of points from the straight distance between dots, evenly spaced in the curve parameter */
+		CHORD,
+		/** Number of points from the length along the curve, evenly spaced along the curve */
+		ARC_LENGTH,
+		/** Number of points from how much the curve bends, so that it is never farther than the tolerance from the lines between points */
+		ADAPTIVE
+	}
 
 	private enum FitType {QUAD, CUBIC};	// Fit a segment either Quadratic or Cubic
 
 	/**
 	 * Data for a segment of a curve which can be a Quadratic fit or a Cubic fit.
+	 * The segment also remembers what it was fit to and its sampled points,
+	 * so that a segment which is not affected by an edit can be reused as is.
 	 */
 	private class SegData {	
 		protected FitType type;			// QUAD or CUBIC
 		protected Point2D.Double p1;			// control point for QUAD, or 1st point for CUBIC
 		protected Point2D.Double p2;			// 2nd control point for CUBIC
+		protected double x0, y0, x1, y1;	// dots at the start and end of the segment
+		protected double a0, a1, aSeg;		// angle at the start and end dots, and angle of the segment
+		protected double dd = 0.0;			// point spacing of the sampled points (0.0 = not yet sampled)
+		protected int pps = 0;				// number of sampled points (not including the first dot)
+		protected int start = 0;			// index of the first sampled point in the samples
+		protected double bx, by, cx, cy, ex, ey;	// B(t) = P0 + b t + c tt + e ttt (set by polynomial)
+		protected double[] lengths = null;	// length from the start to the end of each of the LENGTH_STEPS parts
 
 		/**
 		 * Create the segment data from 2 control points (implies CUBIC).
@@ -66,11 +105,59 @@ public class FittedCurve extends PtDefinedLine {
 			this.p1 = p1;
 			this.p2 = null;
 		}
+
+		/**
+		 * Remember the data that this segment was fit to.
+		 * @param d0 dot at the start of the segment
+		 * @param d1 dot at the end of the segment
+		 * @param ang0 angle at the start dot
+		 * @param ang1 angle at the end dot
+		 * @param angSeg angle of the segment
+		 */
+		protected void setFit(Point2D.Double d0, Point2D.Double d1, double ang0, double ang1, double angSeg) {
+			this.x0 = d0.x;
+			this.y0 = d0.y;
+			this.x1 = d1.x;
+			this.y1 = d1.y;
+			this.a0 = ang0;
+			this.a1 = ang1;
+			this.aSeg = angSeg;
+		}
+
+		/**
+		 * Determine if this segment was fit to exactly the given data.
+		 * @param d0 dot at the start of the segment
+		 * @param d1 dot at the end of the segment
+		 * @param ang0 angle at the start dot
+		 * @param ang1 angle at the end dot
+		 * @param angSeg angle of the segment
+		 * @return true if the segment can be reused
+		 */
+		protected boolean fits(Point2D.Double d0, Point2D.Double d1, double ang0, double ang1, double angSeg) {
+			return (x0 == d0.x) && (y0 == d0.y) && (x1 == d1.x) && (y1 == d1.y)
+					&& (a0 == ang0) && (a1 == ang1) && (aSeg == angSeg);
+		}
 	}	// end SegData
 
 	private double ptSpacing = 0.0;
+	private boolean parallel = false;		// true: sample large curves on several threads
+	private Sampling sampling = Sampling.CHORD;	// how the points are spaced
+	private double tolerance = DEFAULT_TOLERANCE;	// for ADAPTIVE, farthest the curve can be from the lines between points
 	ArrayList<SegData> pC;					// control points for this curve
 	double[] pAng;
+	private ArrayList<SegData> lastSegs;	// segments used for the last getCurvePoints (null if none)
+	private final PointList samples = new PointList();	// points of the fit curve (reused for every call)
+	private int samplesVersion = -1;		// version of the points used for the samples
+	private double samplesDd = 0.0;			// point spacing used for the samples
+	private Point2D.Double[] ctrlPts = null;	// control points for samplesVersion (null until asked for)
+	private GeneralPath curvePath = null;	// path to draw the samples (null until painted)
+	private int pathVersion = -1;			// version of the points used for curvePath
+	private double pathDd = 0.0;			// point spacing used for curvePath
+	private int unchangedHead = 0;			// leading points unchanged by the last resample
+	private int unchangedTail = 0;			// trailing points unchanged by the last resample
+	private long samplesSerial = 0;			// number of times the points have been sampled
+	private final int[] heads = new int[CHANGES_KEPT];	// unchangedHead of the last resamples (by serial)
+	private final int[] tails = new int[CHANGES_KEPT];	// unchangedTail of the last resamples (by serial)
 
 	/**
 	 * A curve-fit curve defined by a number of Dots.
@@ -112,10 +199,17 @@ public class FittedCurve extends PtDefinedLine {
 			if (ptSpacing == 0.0)
 				return;
 
-			Point2D.Double[] drawPts = getCurvePoints(ptSpacing);
-			for (int i = 1; i < drawPts.length; i++) {
-				g2d.draw(new Line2D.Double(drawPts[i-1].x, drawPts[i-1].y, drawPts[i].x, drawPts[i].y));
+			if ((curvePath == null) || (pathVersion != getVersion()) || (pathDd != ptSpacing)) {
+				PointList drawPts = getCurvePointList(ptSpacing);	// only when the dots have changed
+				curvePath = new GeneralPath(GeneralPath.WIND_EVEN_ODD, drawPts.size());
+				curvePath.moveTo(drawPts.getX(0), drawPts.getY(0));
+				for (int i = 1; i < drawPts.size(); i++) {
+					curvePath.lineTo(drawPts.getX(i), drawPts.getY(i));
+				}
+				pathVersion = getVersion();
+				pathDd = ptSpacing;
 			}
+			g2d.draw(curvePath);
 
 			Point2D.Double[] cPts = getControlPoints();
 			for (Point2D.Double pt : cPts) {
@@ -131,7 +225,7 @@ public class FittedCurve extends PtDefinedLine {
 	 */
     public Dot addPt(Point2D.Double p) {
         Dot newDot = new Dot(p, color);
-        ptList.add(newDot);
+        addPt(newDot);
 		return newDot;
     }
 
@@ -146,6 +240,89 @@ public class FittedCurve extends PtDefinedLine {
 		return newDot;
     }
 
+	/**
+     * Insert a number of dots at the correct locations in the list (sorted by height).
+	 * @param pts new dot locations in inches
+	 * @return the new dots (in the same order as pts)
+	 */
+    public Dot[] insertPts(Point2D.Double[] pts) {
+		Dot[] newDots = new Dot[pts.length];
+		for (int i = 0; i < pts.length; i++) {
+			newDots[i] = new Dot(pts[i], color);
+		}
+        super.insertPts(Arrays.asList(newDots));
+		return newDots;
+    }
+
+	/**
+	 * Determine if large curves are sampled on several threads.
+	 * @return true=parallel, false=sampled on the calling thread
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * Set whether large curves are sampled on several threads.
+	 * This only pays when at least PARALLEL_MIN_POINTS new points are needed,
+	 * so smaller curves are always sampled on the calling thread.
+	 * @param p true=parallel, false=sampled on the calling thread
+	 */
+	public void setParallel(boolean p) {
+		parallel = p;
+	}
+
+	/**
+	 * Get how the points of the fit curve are spaced.
+	 * @return CHORD, ARC_LENGTH, or ADAPTIVE
+	 */
+	public Sampling getSampling() {
+		return sampling;
+	}
+
+	/**
+	 * Set how the points of the fit curve are spaced.
+	 * With CHORD, a segment gets points from the straight distance between its dots,
+	 * so the points are farther apart than asked for on strongly curved segments.
+	 * With ARC_LENGTH, the points are evenly spaced along the curve at close to the given distance.
+	 * With ADAPTIVE, the given distance is not used. Each segment gets just enough points
+	 * that the curve is no farther than the tolerance from the lines between them,
+	 * so straight segments get few points and tightly curved segments get more.
+	 * @param s CHORD, ARC_LENGTH, or ADAPTIVE
+	 */
+	public void setSampling(Sampling s) {
+		if ((s != null) && (s != sampling)) {
+			sampling = s;
+			samplesVersion = -1;		// all points have to be sampled again
+			lastSegs = null;
+		}
+	}
+
+	/**
+	 * Get the farthest that an ADAPTIVE curve can be from the lines between its points.
+	 * @return tolerance in inches
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Set the farthest that an ADAPTIVE curve can be from the lines between its points.
+	 * @param tol tolerance in inches (must be greater than 0)
+	 */
+	public void setTolerance(double tol) {
+		if (!(tol > 0.0)) {
+			throw new IllegalArgumentException("tolerance must be greater than 0: " + tol);
+		}
+		if (tol != tolerance) {
+			tolerance = tol;
+			if (sampling == Sampling.ADAPTIVE) {
+				samplesVersion = -1;		// all points have to be sampled again
+				lastSegs = null;
+			}
+		}
+	}
+
     /**
      * Return an array of Point2D for the points on the fit curve in inches (cm)
      * that are fit from the original array of given points.
@@ -154,16 +331,64 @@ public class FittedCurve extends PtDefinedLine {
      * @return array of Point2D for the points on the fit curve, empty array if no points
      */
 	public Point2D.Double[] getCurvePoints(double dd) {
+		return getCurvePointList(dd).toPoints();
+	}
+
+    /**
+     * Return the points on the fit curve in inches (cm)
+     * that are fit from the original array of given points.
+     * If no points, return an empty array.
+     * The returned PointList is reused by the next call, so copy it to keep the points.
+     * Nothing is recalculated if the dots and dd are the same as last time.
+     * @param dd approximate distance that should be between returned points
+     * @return PointList of the points on the fit curve, empty if no points
+     */
+	public PointList getCurvePointList(double dd) {
 		this.ptSpacing = dd;
-		ArrayList<Point2D.Double> pts = new ArrayList<Point2D.Double>();
+		if ((samplesVersion == getVersion()) && (samplesDd == dd)) {
+			return samples;			// nothing has changed
+		}
+		Metrics.Timer timer = METRICS.start(Metrics.GET_CURVE_POINTS);
+		boolean done = false;
+		try {
+			resample(dd);
+			done = true;
+		} finally {
+			if (!done) {
+				samplesVersion = -1;		// the samples may be partly filled, so sample everything next time
+				lastSegs = null;
+			}
+		}
+		samplesSerial++;
+		heads[(int) (samplesSerial % CHANGES_KEPT)] = unchangedHead;
+		tails[(int) (samplesSerial % CHANGES_KEPT)] = unchangedTail;
+		timer.stop(samples.size, dd, 0.0, 0);
+		return samples;
+	}
+
+	/**
+	 * Fit the curve and sample the points again.
+	 * Only segments affected by an edit get new points.
+	 * @param dd approximate distance that should be between points
+	 */
+	private void resample(double dd) {
+		samplesVersion = getVersion();
+		samplesDd = dd;
+		ctrlPts = null;
+		ArrayList<SegData> prev = lastSegs;		// segments used last time
+		lastSegs = null;
+		unchangedHead = 0;
+		unchangedTail = 0;
 
 		if (ptList.isEmpty()) {
-			return arrayFromList(pts);
+			samples.clear();
+			return;
         }
 		
         if (ptList.size() == 1) {
-            pts.add(ptList.get(0).getPos());
-			return arrayFromList(pts);
+			samples.clear();
+            samples.add(ptList.get(0).getPos().x, ptList.get(0).getPos().y);
+			return;
         }
 
         if (ptList.size() == 2) {      // straight line between 2 points
@@ -172,65 +397,399 @@ public class FittedCurve extends PtDefinedLine {
 			double dx = d1.x-d0.x;
 			double dy = d1.y-d0.y;
 			double length = Math.sqrt(dx*dx + dy*dy);
-			int npts = (int)(length/dd);
+			int npts = (sampling == Sampling.ADAPTIVE) ? 1 : (int)(length/dd);	// a straight line is never off
+			samples.clear();
+			samples.ensureCapacity(npts+1);
             for (int i = 0; i <= npts; i++) {
                 double x = d0.x + (d1.x-d0.x)*i/npts;
                 double y = d0.y + (d1.y-d0.y)*i/npts;
-                pts.add(new Point2D.Double(x, y));
+                samples.add(x, y);
             }	
 			pAng = new double[ptList.size()];		// angle is the same at each point
 			pAng[0] = pAng[1] = Math.atan2(dy, dx);
-			return arrayFromList(pts);
+			return;
         }
 
 		makeControlPts();
-		pts.add(new Point2D.Double(ptList.get(0).getPos().x, ptList.get(0).getPos().y));	// first point
-		for (int i = 0; i < ptList.size()-1; i++) {
+
+		int nSeg = pC.size();
+		int nPrev = (prev == null) ? 0 : prev.size();
+		int headSegs = 0;			// leading segments that are the same as last time
+		while ((headSegs < nSeg) && (headSegs < nPrev) && (pC.get(headSegs) == prev.get(headSegs))
+				&& (pC.get(headSegs).dd == dd)) {
+			headSegs++;
+		}
+		int tailSegs = 0;			// trailing segments that are the same as last time
+		while ((tailSegs < nSeg - headSegs) && (tailSegs < nPrev - headSegs) 
+				&& (pC.get(nSeg-1-tailSegs) == prev.get(nPrev-1-tailSegs)) && (pC.get(nSeg-1-tailSegs).dd == dd)) {
+			tailSegs++;
+		}
+		int oldTailStart = (tailSegs > 0) ? pC.get(nSeg-tailSegs).start : samples.size;
+
+		int total = 1;				// size the output from the number of points in each segment
+		for (int i = 0; i < nSeg; i++) {
 			SegData seg = pC.get(i);
-			double t, t_;
-			double a, b, c, d;
-			Point2D.Double di = ptList.get(i).getPos();
-			Point2D.Double di1 = ptList.get(i+1).getPos();
-			double length = Math.hypot(di1.x-di.x, di1.y-di.y);
-			int pps = Math.max((int)(length/dd), 1);	// number of points for this segment of the curve
-			double step = 1.0 / (double)pps;
-			switch(seg.type) {
-				case QUAD:
-					for(int j = 1; j <= pps; j++) {				// Quadratic Bezier Curve
-						t = j * step;
-						t_ = 1.0 - t;
-						a = t_ * t_;			// a = (1-t)(1-t)
-						b = 2 * t_ * t;			// b = 2(1-t)t
-						c = t * t;				// c = tt
-												// B(t)= a*P0 + b*P1 + c*P2 + d*P3
-												// P0 = p[i]
-												// P1 = pC[i].p1
-												// P2 = p[i+1]
-						pts.add(new Point2D.Double(a * di.x + b * pC.get(i).p1.x + c * di1.x,
-											a * di.y + b * pC.get(i).p1.y + c * di1.y));
-					}
-					break;
-				case CUBIC:
-					for(int j = 1; j <= pps; j++) {				// Cubic Bezier Curve
-						t = j * step;
-						t_ = 1.0 - t;
-						a = t_ * t_ * t_;		// a = (1-t)(1-t)(1-t)
-						b = 3 * t_ * t_ * t;	// b = 3(1-t)(1-t)t
-						c = 3 * t_ * t * t;		// c = 3(1-t)tt
-						d = t * t * t;			// d = ttt
-												// B(t)= a*P0 + b*P1 + c*P2 + d*P3
-												// P0 = p[i]
-												// P1 = pC[i].p1
-												// P2 = pC[i].p3
-												// P3 = p[i+1]
-						pts.add(new Point2D.Double(a * di.x + b * pC.get(i).p1.x  + c * pC.get(i).p2.x + d * di1.x,
-											a * di.y + b * pC.get(i).p1.y + c * pC.get(i).p2.y + d * di1.y));
-					}
-					break;
+			if ((i >= headSegs) && (i < nSeg - tailSegs)) {
+				switch (sampling) {		// number of points for this segment of the curve
+					case ARC_LENGTH:
+						seg.pps = Math.max((int)(measure(seg)/dd), 1);
+						break;
+					case ADAPTIVE:
+						seg.pps = pointsFor(seg, tolerance);
+						break;
+					default:
+						seg.pps = Math.max((int)(Math.hypot(seg.x1-seg.x0, seg.y1-seg.y0)/dd), 1);
+						break;
+				}
+			}
+			if (i < headSegs) {
+				unchangedHead += seg.pps;
+			}
+			if (i >= nSeg - tailSegs) {
+				unchangedTail += seg.pps;
 			}
+			total += seg.pps;
+		}
+		if (headSegs > 0) {
+			unchangedHead++;		// the first point is unchanged too
 		}
 
-		return arrayFromList(pts);
+		samples.ensureCapacity(total);			// keeps the points from last time
+		int newTailStart = total - unchangedTail;
+		System.arraycopy(samples.xs, oldTailStart, samples.xs, newTailStart, unchangedTail);	// move the unchanged tail
+		System.arraycopy(samples.ys, oldTailStart, samples.ys, newTailStart, unchangedTail);
+		samples.xs[0] = ptList.get(0).getPos().x;		// first point
+		samples.ys[0] = ptList.get(0).getPos().y;
+		int idx = 1;
+		for (int i = 0; i < nSeg; i++) {		// each segment starts after the points of the ones before
+			SegData seg = pC.get(i);
+			seg.start = idx;
+			idx += seg.pps;
+		}
+		int newPts = total - 1 - (unchangedHead > 0 ? unchangedHead - 1 : 0) - unchangedTail;
+		if (parallel && (N_CPU > 1) && (newPts >= PARALLEL_MIN_POINTS)) {
+			sampleParallel(headSegs, nSeg - tailSegs, newPts, dd);
+		} else {
+			for (int i = headSegs; i < nSeg - tailSegs; i++) {
+				sampleSegment(pC.get(i), dd);		// only segments affected by an edit need new points
+			}
+		}
+		samples.size = total;
+		lastSegs = pC;
+	}
+
+	/**
+	 * Get the serial number of the points returned by getCurvePointList.
+	 * It goes up each time the points are sampled again.
+	 * Keep it to find out later which points changed with getUnchangedHead and getUnchangedTail.
+	 * @return serial number of the current points
+	 */
+	public long getSamplesSerial() {
+		return samplesSerial;
+	}
+
+	/**
+	 * Get the number of leading points that are the same now as they were
+	 * when the points had the given serial number. 
+	 * Every caller of getCurvePointList gets the right answer for the points it last used, 
+	 * no matter who else asked for the points in between.
+	 * @param since serial number from getSamplesSerial (-1 if the points were never used)
+	 * @return number of unchanged points at the start (bottom) of the curve
+	 */
+	public int getUnchangedHead(long since) {
+		if (since == samplesSerial) {
+			return samples.size;		// nothing has changed
+		}
+		return unchangedSince(since, heads);
+	}
+
+	/**
+	 * Get the number of trailing points that are the same now as they were
+	 * when the points had the given serial number.
+	 * @param since serial number from getSamplesSerial (-1 if the points were never used)
+	 * @return number of unchanged points at the end (top) of the curve
+	 */
+	public int getUnchangedTail(long since) {
+		if (since == samplesSerial) {
+			return 0;			// nothing has changed
+		}
+		return unchangedSince(since, tails);
+	}
+
+	/**
+	 * Merge the unchanged points of each resample after the given serial number.
+	 * A point is unchanged only if no resample since then changed it.
+	 * @param since serial number from getSamplesSerial
+	 * @param counts heads or tails
+	 * @return number of unchanged points (0 if the serial number is too old to know)
+	 */
+	private int unchangedSince(long since, int[] counts) {
+		if ((since < 0) || (since > samplesSerial) || (samplesSerial - since > CHANGES_KEPT)) {
+			return 0;
+		}
+		int n = samples.size;
+		for (long s = since + 1; s <= samplesSerial; s++) {
+			n = Math.min(n, counts[(int) (s % CHANGES_KEPT)]);
+		}
+		return n;
+	}
+
+	/**
+	 * Sample a range of segments on several threads.
+	 * The segments are split into slices with about the same number of points,
+	 * and each slice writes only its own part of the samples.
+	 * This does not return until every slice is finished, even if one of them fails,
+	 * and a failure on another thread is thrown again here.
+	 * @param first first segment to sample
+	 * @param end one past the last segment to sample
+	 * @param nPts total number of points in the segments
+	 * @param dd approximate distance that should be between points
+	 */
+	private void sampleParallel(int first, int end, int nPts, final double dd) {
+		ArrayList<RequestProcessor.Task> tasks = new ArrayList<RequestProcessor.Task>();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();	// first failure of a slice
+		try {
+			int perSlice = nPts / N_CPU + 1;
+			int sliceStart = first;
+			int count = 0;
+			for (int i = first; i < end; i++) {
+				count += pC.get(i).pps;
+				if ((count >= perSlice) && (i + 1 < end)) {
+					final int from = sliceStart, to = i + 1;
+					tasks.add(RP.post(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								for (int j = from; j < to; j++) {
+									sampleSegment(pC.get(j), dd);
+								}
+							} catch (Throwable ex) {
+								failure.compareAndSet(null, ex);	// RequestProcessor would only log it
+							}
+						}
+					}));
+					sliceStart = i + 1;
+					count = 0;
+				}
+			}
+			for (int j = sliceStart; j < end; j++) {	// last slice on this thread
+				sampleSegment(pC.get(j), dd);
+			}
+		} finally {
+			for (RequestProcessor.Task task : tasks) {
+				task.waitFinished();		// no slice may still be writing the samples after this returns
+			}
+		}
+		Throwable ex = failure.get();
+		if (ex instanceof RuntimeException) {
+			throw (RuntimeException) ex;
+		} else if (ex instanceof Error) {
+			throw (Error) ex;
+		}
+	}
+
+	/**
+	 * Sample the points of a segment of the fit curve into the samples 
+	 * starting at seg.start, using forward differences of the Bezier polynomial.
+	 * The first dot of the segment is not included, and the last point is exactly the next dot.
+	 * @param seg segment with its control points and number of points
+	 * @param dd approximate distance that should be between points
+	 */
+	private void sampleSegment(SegData seg, double dd) {
+		if (sampling == Sampling.ARC_LENGTH) {
+			sampleByLength(seg, dd);
+			return;
+		}
+		double[] xs = samples.xs;
+		double[] ys = samples.ys;
+		int k = seg.start;
+		double h = 1.0 / (double)seg.pps;
+		double h2 = h * h;
+		double x = seg.x0;
+		double y = seg.y0;
+		switch(seg.type) {
+			case QUAD: {						// Quadratic Bezier Curve
+												// B(t) = P0 + 2(P1-P0)t + (P0-2P1+P2)tt
+				double ax = seg.x0 - 2.0 * seg.p1.x + seg.x1;
+				double ay = seg.y0 - 2.0 * seg.p1.y + seg.y1;
+				double dx = 2.0 * (seg.p1.x - seg.x0) * h + ax * h2;	// 1st forward difference
+				double dy = 2.0 * (seg.p1.y - seg.y0) * h + ay * h2;
+				double ddx = 2.0 * ax * h2;								// 2nd forward difference (constant)
+				double ddy = 2.0 * ay * h2;
+				for (int j = 1; j < seg.pps; j++) {
+					x += dx;
+					y += dy;
+					dx += ddx;
+					dy += ddy;
+					xs[k] = x;
+					ys[k] = y;
+					k++;
+				}
+				break;
+			}
+			case CUBIC: {						// Cubic Bezier Curve
+												// B(t) = P0 + 3(P1-P0)t + 3(P0-2P1+P2)tt + (P3-P0+3(P1-P2))ttt
+				double bx = 3.0 * (seg.p1.x - seg.x0);
+				double by = 3.0 * (seg.p1.y - seg.y0);
+				double cx = 3.0 * (seg.x0 - 2.0 * seg.p1.x + seg.p2.x);
+				double cy = 3.0 * (seg.y0 - 2.0 * seg.p1.y + seg.p2.y);
+				double ex = seg.x1 - seg.x0 + 3.0 * (seg.p1.x - seg.p2.x);
+				double ey = seg.y1 - seg.y0 + 3.0 * (seg.p1.y - seg.p2.y);
+				double h3 = h2 * h;
+				double dx = bx * h + cx * h2 + ex * h3;		// 1st forward difference
+				double dy = by * h + cy * h2 + ey * h3;
+				double ddx = 2.0 * cx * h2 + 6.0 * ex * h3;	// 2nd forward difference
+				double ddy = 2.0 * cy * h2 + 6.0 * ey * h3;
+				double dddx = 6.0 * ex * h3;				// 3rd forward difference (constant)
+				double dddy = 6.0 * ey * h3;
+				for (int j = 1; j < seg.pps; j++) {
+					x += dx;
+					y += dy;
+					dx += ddx;
+					dy += ddy;
+					ddx += dddx;
+					ddy += dddy;
+					xs[k] = x;
+					ys[k] = y;
+					k++;
+				}
+				break;
+			}
+		}
+		xs[k] = seg.x1;		// last point is exactly on the next dot
+		ys[k] = seg.y1;
+		seg.dd = dd;
+	}
+
+	/**
+	 * Put the polynomial for the segment's Bezier curve in the segment.
+	 * @param seg segment with its control points
+	 */
+	private static void polynomial(SegData seg) {
+		if (seg.type == FitType.QUAD) {		// B(t) = P0 + 2(P1-P0)t + (P0-2P1+P2)tt
+			seg.bx = 2.0 * (seg.p1.x - seg.x0);
+			seg.by = 2.0 * (seg.p1.y - seg.y0);
+			seg.cx = seg.x0 - 2.0 * seg.p1.x + seg.x1;
+			seg.cy = seg.y0 - 2.0 * seg.p1.y + seg.y1;
+			seg.ex = 0.0;
+			seg.ey = 0.0;
+		} else {							// B(t) = P0 + 3(P1-P0)t + 3(P0-2P1+P2)tt + (P3-P0+3(P1-P2))ttt
+			seg.bx = 3.0 * (seg.p1.x - seg.x0);
+			seg.by = 3.0 * (seg.p1.y - seg.y0);
+			seg.cx = 3.0 * (seg.x0 - 2.0 * seg.p1.x + seg.p2.x);
+			seg.cy = 3.0 * (seg.y0 - 2.0 * seg.p1.y + seg.p2.y);
+			seg.ex = seg.x1 - seg.x0 + 3.0 * (seg.p1.x - seg.p2.x);
+			seg.ey = seg.y1 - seg.y0 + 3.0 * (seg.p1.y - seg.p2.y);
+		}
+	}
+
+	/**
+	 * Get the number of points that a segment needs so that the lines between them,
+	 * evenly spaced in t, are no farther than the tolerance from the curve.
+	 * A piece of the curve 1/n long in t is no farther than max|B''|/(8nn) from its chord,
+	 * and B'' is a straight line in t, so its largest size is at one end.
+	 * @param seg segment with its control points
+	 * @param tol tolerance in inches
+	 * @return number of points (not including the first dot)
+	 */
+	private static int pointsFor(SegData seg, double tol) {
+		polynomial(seg);
+		double b2 = Math.max(Math.hypot(2.0 * seg.cx, 2.0 * seg.cy),	// |B''| at t=0 and t=1
+				Math.hypot(2.0 * seg.cx + 6.0 * seg.ex, 2.0 * seg.cy + 6.0 * seg.ey));
+		double n = Math.ceil(Math.sqrt(b2 / (8.0 * tol)));
+		return (int) Math.max(1.0, Math.min(n, Integer.MAX_VALUE / 4));
+	}
+
+	/**
+	 * Measure the length along a segment of the fit curve.
+	 * The segment is split into LENGTH_STEPS parts (evenly spaced in t)
+	 * and each part is measured with 5-point Gauss-Legendre quadrature.
+	 * The polynomial and the length at the end of each part are kept in the segment for sampleByLength.
+	 * @param seg segment with its control points
+	 * @return length of the segment
+	 */
+	private static double measure(SegData seg) {
+		polynomial(seg);
+		if (seg.lengths == null) {
+			seg.lengths = new double[LENGTH_STEPS];
+		}
+		double length = 0.0;
+		for (int i = 0; i < LENGTH_STEPS; i++) {
+			length += lengthOf(seg, (double) i / LENGTH_STEPS, (double) (i + 1) / LENGTH_STEPS);
+			seg.lengths[i] = length;
+		}
+		return length;
+	}
+
+	/**
+	 * Get the length along a segment between two values of t using 5-point Gauss-Legendre quadrature.
+	 * @param seg segment with its polynomial
+	 * @param t0 start
+	 * @param t1 end
+	 * @return length from t0 to t1
+	 */
+	private static double lengthOf(SegData seg, double t0, double t1) {
+		double half = 0.5 * (t1 - t0);
+		double mid = 0.5 * (t1 + t0);
+		double sum = 0.0;
+		for (int k = 0; k < GAUSS_X.length; k++) {
+			sum += GAUSS_W[k] * speed(seg, mid + half * GAUSS_X[k]);
+		}
+		return half * sum;
+	}
+
+	/**
+	 * Get the speed |B'(t)| along a segment.
+	 * @param seg segment with its polynomial
+	 * @param t curve parameter
+	 * @return speed
+	 */
+	private static double speed(SegData seg, double t) {
+		double dx = seg.bx + (2.0 * seg.cx + 3.0 * seg.ex * t) * t;
+		double dy = seg.by + (2.0 * seg.cy + 3.0 * seg.ey * t) * t;
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	/**
+	 * Sample the points of a segment of the fit curve into the samples 
+	 * starting at seg.start, evenly spaced along the curve.
+	 * For each point, t is found with Newton steps on the length of the part of the segment it is in.
+	 * The first dot of the segment is not included, and the last point is exactly the next dot.
+	 * @param seg segment measured by measure() with its number of points
+	 * @param dd approximate distance that should be between points
+	 */
+	private void sampleByLength(SegData seg, double dd) {
+		double[] xs = samples.xs;
+		double[] ys = samples.ys;
+		int k = seg.start;
+		double length = seg.lengths[LENGTH_STEPS - 1];
+		double tol = 1.0e-9 * length;
+		int part = 0;
+		for (int j = 1; j < seg.pps; j++) {
+			double s = length * j / seg.pps;		// distance along the segment
+			while ((part < LENGTH_STEPS - 1) && (seg.lengths[part] < s)) {
+				part++;
+			}
+			double s0 = (part == 0) ? 0.0 : seg.lengths[part - 1];
+			double t0 = (double) part / LENGTH_STEPS;
+			double t1 = (double) (part + 1) / LENGTH_STEPS;
+			double partLength = seg.lengths[part] - s0;
+			double t = (partLength > 0.0) ? t0 + (t1 - t0) * (s - s0) / partLength : t0;	// first guess
+			for (int n = 0; n < NEWTON_STEPS; n++) {
+				double err = s0 + lengthOf(seg, t0, t) - s;
+				double v = speed(seg, t);
+				if ((Math.abs(err) <= tol) || (v == 0.0)) {
+					break;
+				}
+				t = Math.max(t0, Math.min(t1, t - err / v));
+			}
+			xs[k] = seg.x0 + (seg.bx + (seg.cx + seg.ex * t) * t) * t;
+			ys[k] = seg.y0 + (seg.by + (seg.cy + seg.ey * t) * t) * t;
+			k++;
+		}
+		xs[k] = seg.x1;		// last point is exactly on the next dot
+		ys[k] = seg.y1;
+		seg.dd = dd;
 	}
 
 	/**
@@ -238,6 +797,9 @@ public class FittedCurve extends PtDefinedLine {
 	 * @return array of control points
 	 */
 	public Point2D.Double[] getControlPoints() {
+		if (ctrlPts != null) {
+			return ctrlPts;
+		}
 		ArrayList<Point2D.Double> cPts = new ArrayList<Point2D.Double>();
 		for(SegData sd : pC) {
 			switch(sd.type) {
@@ -250,7 +812,8 @@ public class FittedCurve extends PtDefinedLine {
 					break;
 			}
 		}
-		return arrayFromList(cPts);
+		ctrlPts = arrayFromList(cPts);
+		return ctrlPts;
 	}
 
 	/**
@@ -267,7 +830,9 @@ public class FittedCurve extends PtDefinedLine {
 	}
 
 	/**
-	 * Make the control points for this curve
+	 * Make the control points for this curve.
+	 * Segments which are fit to the same dots and angles as last time are reused,
+	 * so an edit only refits the few segments next to it.
 	 */
 	private void makeControlPts() {
 		Point2D.Double[] p = new Point2D.Double[ptList.size()];
@@ -303,38 +868,72 @@ public class FittedCurve extends PtDefinedLine {
 //			System.out.println(i + " pAng:" + pAng[i]*180./Math.PI);
 //		}
 		
-		pC = new ArrayList<SegData>();	// control points -- at intersection of pAng lines
-		for (int i = 0; i < p.length-1; i++) {
-			LineGeom line0 = new LineGeom(p[i], pAng[i]);
-			LineGeom line1 = new LineGeom(p[i+1], pAng[i+1]);
-			if (((segAng[i] > pAng[i]) && (pAng[i+1] < segAng[i])) ||
-				((segAng[i] < pAng[i]) && (pAng[i+1] > segAng[i]))) {		// point of inflection
-				LineGeom ll = new LineGeom(p[i], p[i+1]);
-				double x1, y1, x2, y2;
-				if ((ll.isVertical()) || (Math.abs(ll.m) > 1.0)) {		// for steep lines
-					y1 = 0.25 * (p[i+1].y - p[i].y) + p[i].y;		// use 25% and 75% of y
-					x1 = line0.getX(y1);
-					y2 = 0.75 * (p[i+1].y - p[i].y) + p[i].y;
-					x2 = line1.getX(y2);
-				} else {											// for shallow lines
-					x1 = 0.25 * (p[i+1].x - p[i].x) + p[i].x;		// use 25% and 75% of x
-					y1 = line0.getY(x1);
-					x2 = 0.75 * (p[i+1].x - p[i].x) + p[i].x;
-					y2 = line1.getY(x2);
-				}
-				pC.add(new SegData(new Point2D.Double(x1, y1), new Point2D.Double(x2, y2)));
+		int nSeg = p.length-1;
+		ArrayList<SegData> oldC = pC;
+		int nOld = (oldC == null) ? 0 : oldC.size();
+		int head = 0;		// leading segments that were fit to the same data last time
+		while ((head < nSeg) && (head < nOld) 
+				&& oldC.get(head).fits(p[head], p[head+1], pAng[head], pAng[head+1], segAng[head])) {
+			head++;
+		}
+		int tail = 0;		// trailing segments that were fit to the same data last time
+		while ((tail < nSeg - head) && (tail < nOld - head)
+				&& oldC.get(nOld-1-tail).fits(p[nSeg-1-tail], p[nSeg-tail], pAng[nSeg-1-tail], pAng[nSeg-tail], segAng[nSeg-1-tail])) {
+			tail++;
+		}
+
+		pC = new ArrayList<SegData>(nSeg);	// control points -- at intersection of pAng lines
+		for (int i = 0; i < nSeg; i++) {
+			if (i < head) {
+				pC.add(oldC.get(i));					// reuse segments before the edit
+			} else if (i >= nSeg - tail) {
+				pC.add(oldC.get(nOld - nSeg + i));		// reuse segments after the edit
 			} else {
-				Point2D.Double iSect = line0.intersection(line1);	// find intersection of 2 straight lines
-				if (iSect == null) {	// if same slope, choose a point half way
-					pC.add(new SegData(new Point2D.Double((p[i].x + p[i+1].x)/2.0, (p[i].y + p[i+1].y)/2.0)));
-				} else {
-					pC.add(new SegData(new Point2D.Double(iSect.x, iSect.y)));
-				}
+				pC.add(fitSegment(p, segAng, i));
 			}
 		}
 		return;
 	}
 
+	/**
+	 * Fit one segment of the curve between two dots.
+	 * @param p array of the dots
+	 * @param segAng angle of each segment
+	 * @param i index of the segment (from dot i to dot i+1)
+	 * @return segment data with control points
+	 */
+	private SegData fitSegment(Point2D.Double[] p, double[] segAng, int i) {
+		SegData seg;
+		LineGeom line0 = new LineGeom(p[i], pAng[i]);
+		LineGeom line1 = new LineGeom(p[i+1], pAng[i+1]);
+		if (((segAng[i] > pAng[i]) && (pAng[i+1] < segAng[i])) ||
+			((segAng[i] < pAng[i]) && (pAng[i+1] > segAng[i]))) {		// point of inflection
+			LineGeom ll = new LineGeom(p[i], p[i+1]);
+			double x1, y1, x2, y2;
+			if ((ll.isVertical()) || (Math.abs(ll.m) > 1.0)) {		// for steep lines
+				y1 = 0.25 * (p[i+1].y - p[i].y) + p[i].y;		// use 25% and 75% of y
+				x1 = line0.getX(y1);
+				y2 = 0.75 * (p[i+1].y - p[i].y) + p[i].y;
+				x2 = line1.getX(y2);
+			} else {											// for shallow lines
+				x1 = 0.25 * (p[i+1].x - p[i].x) + p[i].x;		// use 25% and 75% of x
+				y1 = line0.getY(x1);
+				x2 = 0.75 * (p[i+1].x - p[i].x) + p[i].x;
+				y2 = line1.getY(x2);
+			}
+			seg = new SegData(new Point2D.Double(x1, y1), new Point2D.Double(x2, y2));
+		} else {
+			Point2D.Double iSect = line0.intersection(line1);	// find intersection of 2 straight lines
+			if (iSect == null) {	// if same slope, choose a point half way
+				seg = new SegData(new Point2D.Double((p[i].x + p[i+1].x)/2.0, (p[i].y + p[i+1].y)/2.0));
+			} else {
+				seg = new SegData(new Point2D.Double(iSect.x, iSect.y));
+			}
+		}
+		seg.setFit(p[i], p[i+1], pAng[i], pAng[i+1], segAng[i]);
+		return seg;
+	}
+
 	/**
 	 * Offset all the dots in the curve.
 	 * @param d offset amount
@@ -352,6 +951,7 @@ public class FittedCurve extends PtDefinedLine {
 			dot.pos.x = dot.getPos().x + perp.x;	// don't use setPos() because it fires a propertyChange
 			dot.pos.y = dot.getPos().y + perp.y;
 		}
+		changed();
 		makeControlPts();
 	}
 
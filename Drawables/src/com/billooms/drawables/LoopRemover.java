@@ -0,0 +1,228 @@
+package com.billooms.drawables;
+
+/**
+ * Removes the loops where an offset polyline crosses itself.
+ * Segments are put in a uniform grid so that only nearby segments are checked,
+ * which takes about O(n) time for the curves of a shape.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class LoopRemover {
+	private final static double T_MIN = 1.0e-9;		// intersections this close to the start of a segment are ignored
+
+	private final double[] xs, ys;	// points of the polyline
+	private final int n;			// number of points
+	private double x0, y0;			// lower left corner of the grid
+	private double cell;			// size of a grid cell
+	private int nx, ny;				// number of cells in x and y
+	private int[] cellStart;		// index into cellSegs of the first segment in each cell (plus one at the end)
+	private int[] cellSegs;			// segment numbers in each cell
+	private double hitX, hitY;		// intersection found by intersect()
+
+	/**
+	 * Remove the loops from the polyline in place.
+	 * Where a segment crosses a later segment, all of the points in between are replaced
+	 * by the point where they cross. The latest crossing segment is used, so a loop
+	 * inside a loop goes too.
+	 * @param xs x-coordinates (changed)
+	 * @param ys y-coordinates (changed)
+	 * @param n number of points
+	 * @return number of points kept at the front of the arrays
+	 */
+	static int removeLoops(double[] xs, double[] ys, int n) {
+		if (n < 4) {		// need at least 3 segments for a loop
+			return n;
+		}
+		LoopRemover lr = new LoopRemover(xs, ys, n);
+		if (lr.cellStart == null) {
+			return n;		// all points are the same
+		}
+		return lr.remove();
+	}
+
+	/**
+	 * Put all the segments of the polyline in the grid.
+	 * @param xs x-coordinates
+	 * @param ys y-coordinates
+	 * @param n number of points
+	 */
+	private LoopRemover(double[] xs, double[] ys, int n) {
+		this.xs = xs;
+		this.ys = ys;
+		this.n = n;
+		makeGrid();
+	}
+
+	/**
+	 * Size the grid so that a segment covers about one cell,
+	 * then put each segment in every cell that its bounding box touches.
+	 */
+	private void makeGrid() {
+		double xMin = xs[0], xMax = xs[0], yMin = ys[0], yMax = ys[0];
+		double length = 0.0;
+		for (int i = 1; i < n; i++) {
+			xMin = Math.min(xMin, xs[i]);
+			xMax = Math.max(xMax, xs[i]);
+			yMin = Math.min(yMin, ys[i]);
+			yMax = Math.max(yMax, ys[i]);
+			length += Math.hypot(xs[i] - xs[i-1], ys[i] - ys[i-1]);
+		}
+		double w = xMax - xMin;
+		double h = yMax - yMin;
+		if (length == 0.0) {
+			return;
+		}
+		cell = Math.max(length / (n - 1), Math.sqrt(w * h / n));	// average segment, or about n cells
+		double maxCells = 4.0 * n + 16.0;
+		double cells = (Math.floor(w / cell) + 1.0) * (Math.floor(h / cell) + 1.0);
+		if (cells > maxCells) {
+			cell = cell * Math.sqrt(cells / maxCells) * 1.01;	// limit the number of cells
+		}
+		x0 = xMin;
+		y0 = yMin;
+		nx = (int) (w / cell) + 1;
+		ny = (int) (h / cell) + 1;
+
+		cellStart = new int[nx * ny + 1];
+		for (int i = 0; i < n - 1; i++) {		// count the segments in each cell
+			int cx0 = cellX(Math.min(xs[i], xs[i+1])), cx1 = cellX(Math.max(xs[i], xs[i+1]));
+			int cy0 = cellY(Math.min(ys[i], ys[i+1])), cy1 = cellY(Math.max(ys[i], ys[i+1]));
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					cellStart[cy * nx + cx + 1]++;
+				}
+			}
+		}
+		for (int c = 0; c < nx * ny; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		cellSegs = new int[cellStart[nx * ny]];
+		int[] fill = new int[nx * ny];
+		for (int i = 0; i < n - 1; i++) {		// then put them in
+			int cx0 = cellX(Math.min(xs[i], xs[i+1])), cx1 = cellX(Math.max(xs[i], xs[i+1]));
+			int cy0 = cellY(Math.min(ys[i], ys[i+1])), cy1 = cellY(Math.max(ys[i], ys[i+1]));
+			for (int cy = cy0; cy <= cy1; cy++) {
+				for (int cx = cx0; cx <= cx1; cx++) {
+					int c = cy * nx + cx;
+					cellSegs[cellStart[c] + fill[c]++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Get the grid column for an x-coordinate.
+	 * @param x x-coordinate
+	 * @return column
+	 */
+	private int cellX(double x) {
+		return Math.max(0, Math.min(nx - 1, (int) ((x - x0) / cell)));
+	}
+
+	/**
+	 * Get the grid row for a y-coordinate.
+	 * @param y y-coordinate
+	 * @return row
+	 */
+	private int cellY(double y) {
+		return Math.max(0, Math.min(ny - 1, (int) ((y - y0) / cell)));
+	}
+
+	/**
+	 * Walk along the polyline, jumping over each loop that is found.
+	 * Points are written back to the front of the arrays, which never passes the points still to be read.
+	 * @return number of points kept
+	 */
+	private int remove() {
+		int size = 1;				// first point is always kept
+		double sx = xs[0], sy = ys[0];	// start of the current segment
+		int i = 0;					// current segment goes from (sx, sy) to point i+1
+		while (i < n - 1) {
+			int j = latestCrossing(sx, sy, i);
+			if (j < 0) {
+				sx = xs[i+1];
+				sy = ys[i+1];
+				i++;
+			} else {
+				sx = hitX;			// skip the loop
+				sy = hitY;
+				i = j;				// and continue along segment j from the crossing
+			}
+			xs[size] = sx;
+			ys[size++] = sy;
+		}
+		return size;
+	}
+
+	/**
+	 * Find the latest segment that crosses the current segment.
+	 * The crossing point is left in hitX, hitY.
+	 * @param sx start of the current segment x
+	 * @param sy start of the current segment y
+	 * @param i the current segment ends at point i+1
+	 * @return segment number (-1 if none)
+	 */
+	private int latestCrossing(double sx, double sy, int i) {
+		double ex = xs[i+1], ey = ys[i+1];
+		int cx0 = cellX(Math.min(sx, ex)), cx1 = cellX(Math.max(sx, ex));
+		int cy0 = cellY(Math.min(sy, ey)), cy1 = cellY(Math.max(sy, ey));
+		int best = -1;
+		double bestX = 0.0, bestY = 0.0;
+		for (int cy = cy0; cy <= cy1; cy++) {
+			for (int cx = cx0; cx <= cx1; cx++) {
+				int c = cy * nx + cx;
+				for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+					int j = cellSegs[k];
+					if ((j > i + 1) && (j > best) && intersect(sx, sy, ex, ey, j)) {
+						best = j;
+						bestX = hitX;
+						bestY = hitY;
+					}
+				}
+			}
+		}
+		hitX = bestX;
+		hitY = bestY;
+		return best;
+	}
+
+	/**
+	 * Determine if the current segment crosses segment j.
+	 * If it does, the crossing point is left in hitX, hitY.
+	 * @param sx start of the current segment x
+	 * @param sy start of the current segment y
+	 * @param ex end of the current segment x
+	 * @param ey end of the current segment y
+	 * @param j segment number (from point j to point j+1)
+	 * @return true if they cross
+	 */
+	private boolean intersect(double sx, double sy, double ex, double ey, int j) {
+		double rx = ex - sx, ry = ey - sy;
+		double qx = xs[j+1] - xs[j], qy = ys[j+1] - ys[j];
+		double denom = rx * qy - ry * qx;
+		if (denom == 0.0) {
+			return false;			// parallel
+		}
+		double ax = xs[j] - sx, ay = ys[j] - sy;
+		double t = (ax * qy - ay * qx) / denom;		// along the current segment
+		double u = (ax * ry - ay * rx) / denom;		// along segment j
+		if ((t <= T_MIN) || (t > 1.0) || (u < 0.0) || (u > 1.0)) {
+			return false;
+		}
+		hitX = sx + t * rx;
+		hitY = sy + t * ry;
+		return true;
+	}
+}
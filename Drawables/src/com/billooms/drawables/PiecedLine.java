@@ -67,7 +67,7 @@ public class PiecedLine extends PtDefinedLine {
 	 */
     public Plus addPt(Point2D.Double p) {
         Plus newPlus = new Plus(p, color);
-        ptList.add(newPlus);
+        addPt(newPlus);
 		return newPlus;
     }
 
@@ -0,0 +1,266 @@
+package com.billooms.drawables;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * A spatial index of 2D points for finding the nearest point quickly.
+ * Each point has an integer id and is kept in a square cell of a uniform grid,
+ * so a point can be added, moved, or removed without rebuilding the index.
+ * Only the cells near a given location are searched.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class PointGrid {
+	private final double cell;			// size of a grid cell
+	private final HashMap<Long, Cell> cells = new HashMap<Long, Cell>();	// only cells with points
+	private double[] xs = new double[16];	// x-coordinate of each id
+	private double[] ys = new double[16];	// y-coordinate of each id
+	private boolean[] used = new boolean[16];	// true if the id is in the grid
+	private int size = 0;				// number of points in the grid
+	private int minCX, maxCX, minCY, maxCY;	// range of cells that have ever had points
+
+	/**
+	 * A spatial index with the given cell size.
+	 * Searches are fastest when a cell holds a few points.
+	 * @param cellSize size of a grid cell (must be greater than 0)
+	 */
+	public PointGrid(double cellSize) {
+		if (!(cellSize > 0.0)) {
+			throw new IllegalArgumentException("cellSize must be greater than 0: " + cellSize);
+		}
+		this.cell = cellSize;
+	}
+
+	/**
+	 * Get the number of points in the grid.
+	 * @return number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Remove all points.
+	 */
+	public void clear() {
+		cells.clear();
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Add a point or move it if the id is already in the grid.
+	 * @param id id of the point (0 or greater)
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 */
+	public void put(int id, double x, double y) {
+		if (id >= used.length) {
+			int cap = Math.max(id + 1, used.length + (used.length >> 1));	// grow by 50%
+			xs = Arrays.copyOf(xs, cap);
+			ys = Arrays.copyOf(ys, cap);
+			used = Arrays.copyOf(used, cap);
+		}
+		int cx = cellOf(x), cy = cellOf(y);
+		if (used[id]) {
+			int oldCX = cellOf(xs[id]), oldCY = cellOf(ys[id]);
+			if ((oldCX == cx) && (oldCY == cy)) {
+				xs[id] = x;			// still in the same cell
+				ys[id] = y;
+				return;
+			}
+			Long oldK = key(oldCX, oldCY);
+			Cell old = cells.get(oldK);
+			old.remove(id);
+			if (old.n == 0) {
+				cells.remove(oldK);
+			}
+		} else {
+			if (size == 0) {
+				minCX = maxCX = cx;
+				minCY = maxCY = cy;
+			}
+			used[id] = true;
+			size++;
+		}
+		xs[id] = x;
+		ys[id] = y;
+		Long k = key(cx, cy);
+		Cell c = cells.get(k);
+		if (c == null) {
+			c = new Cell();
+			cells.put(k, c);
+		}
+		c.add(id);
+		minCX = Math.min(minCX, cx);
+		maxCX = Math.max(maxCX, cx);
+		minCY = Math.min(minCY, cy);
+		maxCY = Math.max(maxCY, cy);
+	}
+
+	/**
+	 * Remove a point.
+	 * @param id id of the point (nothing happens if it isn't in the grid)
+	 */
+	public void remove(int id) {
+		if ((id < 0) || (id >= used.length) || !used[id]) {
+			return;
+		}
+		Long k = key(cellOf(xs[id]), cellOf(ys[id]));
+		Cell c = cells.get(k);
+		c.remove(id);
+		if (c.n == 0) {
+			cells.remove(k);
+		}
+		used[id] = false;
+		size--;
+	}
+
+	/**
+	 * Find the nearest point that is closer than the given distance.
+	 * If two points are the same distance away, the lower id is returned.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param maxDist distance to measure
+	 * @return id of the nearest point, -1 if no point is closer than maxDist
+	 */
+	public int nearest(double x, double y, double maxDist) {
+		return search(x, y, maxDist * maxDist, (int) Math.min(Math.ceil(maxDist / cell), Integer.MAX_VALUE / 2));
+	}
+
+	/**
+	 * Find the nearest point.
+	 * If two points are the same distance away, the lower id is returned.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @return id of the nearest point, -1 if there are no points
+	 */
+	public int nearest(double x, double y) {
+		return search(x, y, Double.POSITIVE_INFINITY, Integer.MAX_VALUE / 2);
+	}
+
+	/**
+	 * Search rings of cells around the given location, stopping when
+	 * no point in the next ring can be closer than the best point so far.
+	 * If that would look in more cells than there are points, all points are checked instead.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param best2 square of the distance that a point must be closer than
+	 * @param maxRing largest ring to search
+	 * @return id of the nearest point, -1 if none
+	 */
+	private int search(double x, double y, double best2, int maxRing) {
+		if (size == 0) {
+			return -1;
+		}
+		int cx = cellOf(x), cy = cellOf(y);
+		int ringLimit = Math.max(Math.max(cx - minCX, maxCX - cx), Math.max(cy - minCY, maxCY - cy));	// past this there are no points
+		maxRing = Math.min(maxRing, Math.max(ringLimit, 0));
+		int bestId = -1;
+		long cellsLeft = 2L * size + 16;	// after this many cells it's faster to check every point
+		for (int r = 0; r <= maxRing; r++) {
+			double inner = (r - 1) * cell;		// every point in ring r is at least this far away
+			if ((r > 0) && (inner > 0.0) && (inner * inner > best2)) {
+				break;
+			}
+			cellsLeft -= (r == 0) ? 1 : 8L * r;
+			if (cellsLeft < 0) {
+				return searchAll(x, y, best2, bestId);
+			}
+			for (int j = cy - r; j <= cy + r; j++) {
+				boolean edgeRow = (j == cy - r) || (j == cy + r);
+				for (int i = cx - r; i <= cx + r; i += (edgeRow ? 1 : 2 * r)) {	// only the cells on the ring
+					Cell c = cells.get(key(i, j));
+					if (c != null) {
+						for (int m = 0; m < c.n; m++) {
+							int id = c.ids[m];
+							double d2 = (xs[id] - x) * (xs[id] - x) + (ys[id] - y) * (ys[id] - y);
+							if ((d2 < best2) || ((d2 == best2) && (bestId >= 0) && (id < bestId))) {
+								best2 = d2;
+								bestId = id;
+							}
+						}
+					}
+				}
+			}
+		}
+		return bestId;
+	}
+
+	/**
+	 * Check every point in the grid.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 * @param best2 square of the distance that a point must be closer than
+	 * @param bestId id of the best point so far (-1 if none)
+	 * @return id of the nearest point, -1 if none
+	 */
+	private int searchAll(double x, double y, double best2, int bestId) {
+		for (int id = 0; id < used.length; id++) {
+			if (used[id]) {
+				double d2 = (xs[id] - x) * (xs[id] - x) + (ys[id] - y) * (ys[id] - y);
+				if ((d2 < best2) || ((d2 == best2) && (bestId >= 0) && (id < bestId))) {
+					best2 = d2;
+					bestId = id;
+				}
+			}
+		}
+		return bestId;
+	}
+
+	/**
+	 * Get the cell number for a coordinate.
+	 * @param v x or y coordinate
+	 * @return cell number
+	 */
+	private int cellOf(double v) {
+		return (int) Math.floor(v / cell);
+	}
+
+	/**
+	 * Get the key for a cell.
+	 * @param cx cell column
+	 * @param cy cell row
+	 * @return key
+	 */
+	private static Long key(int cx, int cy) {
+		return Long.valueOf(((long) cx << 32) | (cy & 0xFFFFFFFFL));
+	}
+
+	/**
+	 * The ids of the points in one cell.
+	 */
+	private static class Cell {
+		int[] ids = new int[4];
+		int n = 0;
+
+		void add(int id) {
+			if (n == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * n);
+			}
+			ids[n++] = id;
+		}
+
+		void remove(int id) {
+			for (int m = 0; m < n; m++) {
+				if (ids[m] == id) {
+					ids[m] = ids[--n];		// order doesn't matter
+					return;
+				}
+			}
+		}
+	}
+}
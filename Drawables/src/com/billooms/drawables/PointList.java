@@ -0,0 +1,181 @@
+package com.billooms.drawables;
+
+import java.awt.geom.Point2D;
+
+/**
+ * An ordered array of 2D points stored as packed x and y coordinates.
+ * This avoids a separate Point2D.Double object for every point of a curve.
+ * Only classes in this package can change the points,
+ * so a PointList that is handed out can only be read.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class PointList {
+	private final static int DEFAULT_CAPACITY = 16;
+
+	/** x-coordinates (only the first size are valid) */
+	double[] xs;
+	/** y-coordinates (only the first size are valid) */
+	double[] ys;
+	/** number of valid points */
+	int size = 0;
+
+	/**
+	 * An empty array of points with room for the given number of points.
+	 * @param capacity initial number of points that can be held
+	 */
+	public PointList(int capacity) {
+		xs = new double[Math.max(capacity, 1)];
+		ys = new double[Math.max(capacity, 1)];
+	}
+
+	/**
+	 * An empty array of points.
+	 */
+	public PointList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * An array of points copied from an array of Point2D.Double.
+	 * @param pts array of Point2D.Double
+	 */
+	public PointList(Point2D.Double[] pts) {
+		this(pts.length);
+		for (int i = 0; i < pts.length; i++) {
+			xs[i] = pts[i].x;
+			ys[i] = pts[i].y;
+		}
+		size = pts.length;
+	}
+
+	/**
+	 * Get the number of points.
+	 * @return number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the x-coordinate of a point.
+	 * @param i index of the point
+	 * @return x-coordinate
+	 */
+	public double getX(int i) {
+		return xs[i];
+	}
+
+	/**
+	 * Get the y-coordinate of a point.
+	 * @param i index of the point
+	 * @return y-coordinate
+	 */
+	public double getY(int i) {
+		return ys[i];
+	}
+
+	/**
+	 * Get a point as a new Point2D.Double.
+	 * @param i index of the point
+	 * @return new Point2D.Double
+	 */
+	public Point2D.Double get(int i) {
+		return new Point2D.Double(xs[i], ys[i]);
+	}
+
+	/**
+	 * Get the length of the straight lines joining the points.
+	 * @return total length
+	 */
+	public double getLength() {
+		double length = 0.0;
+		for (int i = 0; i < size-1; i++) {
+			double dx = xs[i] - xs[i+1];
+			double dy = ys[i] - ys[i+1];
+			length += Math.sqrt(dx*dx + dy*dy);
+		}
+		return length;
+	}
+
+	/**
+	 * Make an array of Point2D.Double for callers that need point objects.
+	 * @return new array of new Point2D.Double
+	 */
+	public Point2D.Double[] toPoints() {
+		Point2D.Double[] pts = new Point2D.Double[size];
+		for (int i = 0; i < size; i++) {
+			pts[i] = new Point2D.Double(xs[i], ys[i]);
+		}
+		return pts;
+	}
+
+	/**
+	 * Make a copy of the points (trimmed to size).
+	 * @return new PointList
+	 */
+	public PointList copy() {
+		PointList pa = new PointList(size);
+		pa.set(this);
+		return pa;
+	}
+
+	/**
+	 * Make sure that there is room for the given number of points.
+	 * Valid points are kept.
+	 * @param n number of points
+	 */
+	void ensureCapacity(int n) {
+		if (n > xs.length) {
+			int cap = Math.max(n, xs.length + (xs.length >> 1));	// grow by 50%
+			double[] newX = new double[cap];
+			double[] newY = new double[cap];
+			System.arraycopy(xs, 0, newX, 0, size);
+			System.arraycopy(ys, 0, newY, 0, size);
+			xs = newX;
+			ys = newY;
+		}
+	}
+
+	/**
+	 * Add a point at the end.
+	 * @param x x-coordinate
+	 * @param y y-coordinate
+	 */
+	void add(double x, double y) {
+		ensureCapacity(size + 1);
+		xs[size] = x;
+		ys[size] = y;
+		size++;
+	}
+
+	/**
+	 * Replace all points with a copy of the given points.
+	 * @param pa points to copy
+	 */
+	void set(PointList pa) {
+		ensureCapacity(pa.size);
+		System.arraycopy(pa.xs, 0, xs, 0, pa.size);
+		System.arraycopy(pa.ys, 0, ys, 0, pa.size);
+		size = pa.size;
+	}
+
+	/**
+	 * Remove all points (the capacity is kept).
+	 */
+	void clear() {
+		size = 0;
+	}
+}
@@ -3,7 +3,12 @@ package com.billooms.drawables;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 
 /**
@@ -27,6 +32,13 @@ import java.util.List;
  */
 public abstract class PtDefinedLine implements Drawable {
 	private final static Color DEFAULT_COLOR = Color.PINK;
+	private final static double GRID_CELL = 0.1;	// size of a cell in the point index
+	private final static Comparator<Pt> BY_HEIGHT = new Comparator<Pt>() {
+		@Override
+		public int compare(Pt p1, Pt p2) {
+			return Double.compare(p1.getPos().y, p2.getPos().y);
+		}
+	};
 	
 	/** Color of the object */
 	protected Color color = DEFAULT_COLOR;
@@ -34,6 +46,19 @@ public abstract class PtDefinedLine implements Drawable {
 	protected boolean visible = true;		// always visible unless specifically changed
 	/** The list of points */
     protected  ArrayList<Pt> ptList;		// point list
+	private int version = 0;				// incremented every time a point changes
+	private final PointGrid grid = new PointGrid(GRID_CELL);	// index of the points for closestPt
+	private final IdentityHashMap<Pt, Integer> gridIds = new IdentityHashMap<Pt, Integer>();	// id of each point in the grid
+	private final ArrayList<Pt> gridPts = new ArrayList<Pt>();	// point for each id (null if the id is free)
+	private final ArrayList<Integer> freeIds = new ArrayList<Integer>();	// ids that can be reused
+	private boolean gridStale = false;		// true if the grid must be rebuilt
+	private final PropertyChangeListener ptListener = new PropertyChangeListener() {
+		@Override
+		public void propertyChange(PropertyChangeEvent evt) {
+			version++;		// a point was moved or dragged
+			indexPt((Pt) evt.getSource());
+		}
+	};
 
 	/**
 	 * A line or curve defined by a number of points (Pt, Plus, etc).
@@ -105,11 +130,70 @@ public abstract class PtDefinedLine implements Drawable {
 		visible = v;
 	}
 
+	/**
+	 * Get the version of the points.
+	 * This changes every time a point is added, deleted, or moved, 
+	 * so anything calculated from the points can be kept until the version changes.
+	 * @return version of the points
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * Mark the points as changed.
+	 * Extensions must call this when they change a point without going through a Pt method.
+	 */
+	protected void changed() {
+		version++;
+		gridStale = true;
+	}
+
+	/**
+	 * Put a point in the grid, or move it there.
+	 * @param pt point
+	 */
+	private void indexPt(Pt pt) {
+		Integer id = gridIds.get(pt);
+		if (id == null) {
+			if (freeIds.isEmpty()) {
+				id = gridPts.size();
+				gridPts.add(pt);
+			} else {
+				id = freeIds.remove(freeIds.size() - 1);	// reuse a free id
+				gridPts.set(id, pt);
+			}
+			gridIds.put(pt, id);
+		}
+		grid.put(id, pt.getPos().x, pt.getPos().y);
+	}
+
+	/**
+	 * Take a point out of the grid.
+	 * @param pt point
+	 */
+	private void unindexPt(Pt pt) {
+		Integer id = gridIds.remove(pt);
+		if (id != null) {
+			grid.remove(id);
+			gridPts.set(id, null);
+			freeIds.add(id);
+		}
+	}
+
 	/**
 	 * Clear the point list.
 	 */
 	public void clear() {
+		for (Pt pt : ptList) {
+			pt.removePropertyChangeListener(ptListener);
+		}
 		ptList.clear();
+		version++;
+		grid.clear();
+		gridIds.clear();
+		gridPts.clear();
+		freeIds.clear();
 	}
 
     /**
@@ -148,57 +232,104 @@ public abstract class PtDefinedLine implements Drawable {
 		return ptList;
 	}
 	
+    /**
+     * Add a point at the end (that is, the top) of the list.
+     * @param newPt the point to be added
+     */
+    public void addPt(Pt newPt) {
+        ptList.add(newPt);
+		newPt.addPropertyChangeListener(ptListener);
+		version++;
+		indexPt(newPt);
+    }
+
     /**
      * Insert a point at the correct location in the list (sorted by height).
+     * The location is found with a binary search, 
+     * and the point goes after any points at the same height.
      * @param newPt the point to be inserted
      */
     public void insertPt(Pt newPt) {
-        if (ptList.isEmpty()) {
-            ptList.add(newPt);
-            return;
-        }
-        double newYInch = newPt.getPos().y;
-        if (newYInch < ptList.get(0).getPos().y) {      // point is below the bottom
-            ptList.add(0, newPt);
-            return;
-        }
-        if (newYInch >= getLastPt().getPos().y) {        // point is above the top
-            ptList.add(newPt);
-            return;
-        }
-        for (int i = 1; i < ptList.size(); i++) {      // point is somewhere between
-            if ((newYInch >= ptList.get(i-1).getPos().y) && (newYInch < ptList.get(i).getPos().y)) {
-                ptList.add(i, newPt);
-                break;
-            }
-        }
+		newPt.addPropertyChangeListener(ptListener);
+		version++;
+		indexPt(newPt);
+        ptList.add(upperBound(newPt.getPos().y), newPt);
     }
 
+    /**
+     * Insert a number of points at the correct locations in the list (sorted by height).
+     * The new points are sorted once and then merged with the list, 
+     * which is much faster than inserting them one at a time.
+     * New points go after any old points at the same height.
+     * @param newPts the points to be inserted
+     */
+    public void insertPts(List<? extends Pt> newPts) {
+		ArrayList<Pt> sorted = new ArrayList<Pt>(newPts);
+		Collections.sort(sorted, BY_HEIGHT);		// stable, so equal heights keep their order
+		ArrayList<Pt> merged = new ArrayList<Pt>(ptList.size() + sorted.size());
+		int i = 0;
+		for (Pt newPt : sorted) {
+			double y = newPt.getPos().y;
+			while ((i < ptList.size()) && (ptList.get(i).getPos().y <= y)) {
+				merged.add(ptList.get(i++));
+			}
+			merged.add(newPt);
+			newPt.addPropertyChangeListener(ptListener);
+			indexPt(newPt);
+		}
+		while (i < ptList.size()) {
+			merged.add(ptList.get(i++));
+		}
+		ptList = merged;
+		version++;
+    }
+
+	/**
+	 * Find where a point at the given height goes in the list.
+	 * @param y height
+	 * @return index of the first point that is higher than y (size of the list if none)
+	 */
+	private int upperBound(double y) {
+		int lo = 0, hi = ptList.size();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ptList.get(mid).getPos().y <= y) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
     /**
      * Delete a given point.
      * @param pt point to be deleted
      */
     public void deletePt(Pt pt) {
-        ptList.remove(pt);
+        if (ptList.remove(pt)) {
+			pt.removePropertyChangeListener(ptListener);
+			version++;
+			unindexPt(pt);
+		}
     }
 
 	/**
 	 * Find the closest point (within dis) to the given point.
+	 * Only the points near the given point are checked.
 	 * @param p given point
 	 * @param dis distance to measure
 	 * @return the closest point (within dis), null if no point is within dis
 	 */
     public Pt closestPt(Point2D.Double p, double dis) {
-        Pt d = null;
-        double minSep = dis;
-        for (Pt dd : ptList) {
-            double sep = dd.separation(p);
-            if (sep < minSep) {
-                minSep = sep;
-                d = dd;
-            }
-        }
-        return d;
+		if (gridStale) {			// points were changed directly, so index them all again
+			for (Pt pt : ptList) {
+				indexPt(pt);
+			}
+			gridStale = false;
+		}
+		int id = grid.nearest(p.x, p.y, dis);
+		return (id < 0) ? null : gridPts.get(id);
     }
 
 	/**
@@ -236,6 +367,7 @@ public abstract class PtDefinedLine implements Drawable {
 			newList.add(p);			// make a new list with the points in reverse order
 		}
 		ptList = newList;
+		changed();
     }
 
 	/**
@@ -246,5 +378,6 @@ public abstract class PtDefinedLine implements Drawable {
 		for (Pt pt : ptList) {
 			pt.offsetY(deltaY);
 		}
+		changed();
 	}
 }
@@ -0,0 +1,267 @@
+package com.billooms.metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends an event to Java Flight Recorder for each stage that is timed.
+ * Each stage gets its own event type (named com.billooms.stage) with the number of points,
+ * resolution, thickness and number of sectors.
+ * The event begins when the stage starts and is sent when it ends, so its duration is the time of the stage.
+ * JFR is only in newer Java versions, so the event types are made with jdk.jfr.EventFactory
+ * by reflection. If there is no JFR (or the program is started with -Dbowlshape.jfr=false)
+ * nothing is sent. A listener keeps track of whether any recording is running,
+ * so when JFR is not recording, sending an event is just a check of a flag.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+final class FlightRecorder {
+	/** Prefix for the names of the event types */
+	final static String PREFIX = "com.billooms.";
+	/** Category shown in JDK Mission Control */
+	private final static String CATEGORY = "BowlShape";
+
+	private Constructor<?> newAnnotation;	// AnnotationElement(Class, Object)
+	private Constructor<?> newValue;		// ValueDescriptor(Class, String, List)
+	private Method create;					// EventFactory.create(List, List)
+	private Method newEvent;				// EventFactory.newEvent()
+	private Method isEnabled;				// Event.isEnabled()
+	private Method set;						// Event.set(int, Object)
+	private Method begin;					// Event.begin()
+	private Method commit;					// Event.commit()
+	private Class<?> nameType, labelType, categoryType, descriptionType;
+	private List<Object> fields;			// ValueDescriptors of the fields in every event
+	private volatile boolean available = false;
+	private volatile boolean recording = false;			// true if any recording is running
+	private final Set<Object> running = Collections.synchronizedSet(new HashSet<Object>());
+	private final ConcurrentHashMap<String, EventType> types = new ConcurrentHashMap<String, EventType>();
+
+	/**
+	 * Find JFR if it is there.
+	 */
+	FlightRecorder() {
+		if ("false".equals(System.getProperty("bowlshape.jfr"))) {
+			return;
+		}
+		try {
+			Class<?> factory = Class.forName("jdk.jfr.EventFactory");
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			Class<?> annotation = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> value = Class.forName("jdk.jfr.ValueDescriptor");
+			nameType = Class.forName("jdk.jfr.Name");
+			labelType = Class.forName("jdk.jfr.Label");
+			categoryType = Class.forName("jdk.jfr.Category");
+			descriptionType = Class.forName("jdk.jfr.Description");
+			newAnnotation = annotation.getConstructor(Class.class, Object.class);
+			newValue = value.getConstructor(Class.class, String.class, List.class);
+			create = factory.getMethod("create", List.class, List.class);
+			newEvent = factory.getMethod("newEvent");
+			isEnabled = event.getMethod("isEnabled");
+			set = event.getMethod("set", int.class, Object.class);
+			begin = event.getMethod("begin");
+			commit = event.getMethod("commit");
+
+			fields = new ArrayList<Object>();
+			fields.add(field(int.class, "points", "Points"));
+			fields.add(field(double.class, "resolution", "Resolution"));
+			fields.add(field(double.class, "thickness", "Thickness"));
+			fields.add(field(int.class, "sectors", "Sectors"));
+			listen();
+			available = true;
+		} catch (Exception ex) {
+			available = false;			// no JFR in this version of Java
+		} catch (LinkageError ex) {
+			available = false;
+		}
+	}
+
+	/**
+	 * Determine if events can be sent.
+	 * @return true=JFR is there (it might not be recording)
+	 */
+	boolean isAvailable() {
+		return available;
+	}
+
+	/**
+	 * Determine if JFR is recording.
+	 * @return true=at least one recording is running
+	 */
+	boolean isRecording() {
+		return available && recording;
+	}
+
+	/**
+	 * Begin an event for a stage if JFR is recording it.
+	 * @param stage name of the stage
+	 * @return event to give to commit(), null if JFR is not recording the stage
+	 */
+	Object begin(String stage) {
+		if (!isRecording()) {
+			return null;
+		}
+		try {
+			EventType type = getType(stage);
+			if (!(Boolean) isEnabled.invoke(type.probe)) {
+				return null;
+			}
+			Object e = newEvent.invoke(type.factory);
+			begin.invoke(e);
+			return e;
+		} catch (Exception ex) {
+			available = false;			// don't keep trying if JFR doesn't work
+			return null;
+		}
+	}
+
+	/**
+	 * End an event and send it with the details of the stage.
+	 * @param event event from begin()
+	 * @param points number of points (0 if it doesn't apply)
+	 * @param resolution resolution (0.0 if it doesn't apply)
+	 * @param thickness thickness (0.0 if it doesn't apply)
+	 * @param sectors number of sectors (0 if it doesn't apply)
+	 */
+	void commit(Object event, int points, double resolution, double thickness, int sectors) {
+		try {
+			set.invoke(event, 0, points);
+			set.invoke(event, 1, resolution);
+			set.invoke(event, 2, thickness);
+			set.invoke(event, 3, sectors);
+			commit.invoke(event);
+		} catch (Exception ex) {
+			available = false;
+		}
+	}
+
+	/**
+	 * Add a listener to JFR that keeps track of which recordings are running.
+	 * @throws Exception if JFR can't take a listener
+	 */
+	private void listen() throws Exception {
+		Class<?> listener = Class.forName("jdk.jfr.FlightRecorderListener");
+		Class<?> recorder = Class.forName("jdk.jfr.FlightRecorder");
+		final Method getRecordings = recorder.getMethod("getRecordings");
+		final Method getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+		Object proxy = Proxy.newProxyInstance(FlightRecorder.class.getClassLoader(), new Class<?>[] {listener},
+				new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+				if (m.getName().equals("recorderInitialized")) {		// recordings started with the program
+					for (Object r : (List<?>) getRecordings.invoke(args[0])) {
+						changed(r, getState.invoke(r));
+					}
+				} else if (m.getName().equals("recordingStateChanged")) {
+					changed(args[0], getState.invoke(args[0]));
+				} else if (m.getName().equals("equals")) {
+					return proxy == args[0];
+				} else if (m.getName().equals("hashCode")) {
+					return System.identityHashCode(proxy);
+				} else if (m.getName().equals("toString")) {
+					return "BowlShape recording listener";
+				}
+				return null;
+			}
+		});
+		recorder.getMethod("addListener", listener).invoke(null, proxy);
+	}
+
+	/**
+	 * Note the new state of a recording.
+	 * @param r Recording
+	 * @param state RecordingState
+	 */
+	private void changed(Object r, Object state) {
+		synchronized (running) {
+			if ("RUNNING".equals(state.toString())) {
+				running.add(r);
+			} else {
+				running.remove(r);
+			}
+			recording = !running.isEmpty();
+		}
+	}
+
+	/**
+	 * Get the event type for a stage, making it the first time.
+	 * @param stage name of the stage
+	 * @return event type
+	 * @throws Exception if JFR can't make it
+	 */
+	private EventType getType(String stage) throws Exception {
+		EventType type = types.get(stage);
+		if (type == null) {
+			List<Object> annotations = new ArrayList<Object>();
+			annotations.add(annotation(nameType, PREFIX + stage));
+			annotations.add(annotation(labelType, stage));
+			annotations.add(annotation(categoryType, new String[] {CATEGORY}));
+			annotations.add(annotation(descriptionType, "Time for the " + stage + " stage"));
+			Object factory = create.invoke(null, annotations, fields);
+			EventType newType = new EventType(factory, newEvent.invoke(factory));
+			type = types.putIfAbsent(stage, newType);
+			if (type == null) {
+				type = newType;
+			}
+		}
+		return type;
+	}
+
+	/**
+	 * Make a field for the events.
+	 * @param type type of the field
+	 * @param name name of the field
+	 * @param label label shown for the field
+	 * @return ValueDescriptor
+	 * @throws Exception if JFR can't make it
+	 */
+	private Object field(Class<?> type, String name, String label) throws Exception {
+		List<Object> annotations = new ArrayList<Object>();
+		annotations.add(annotation(labelType, label));
+		return newValue.newInstance(type, name, annotations);
+	}
+
+	/**
+	 * Make an annotation for an event type or field.
+	 * @param type type of annotation
+	 * @param value value of the annotation
+	 * @return AnnotationElement
+	 * @throws Exception if JFR can't make it
+	 */
+	private Object annotation(Class<?> type, Object value) throws Exception {
+		return newAnnotation.newInstance(type.asSubclass(Annotation.class), value);
+	}
+
+	/**
+	 * The factory for one event type, and an event used to check if it is enabled.
+	 */
+	private static class EventType {
+		final Object factory;
+		final Object probe;
+
+		EventType(Object factory, Object probe) {
+			this.factory = factory;
+			this.probe = probe;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+package com.billooms.metrics;
+
+import com.billooms.metrics.api.Histogram;
+import com.billooms.metrics.api.Metrics;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openide.util.lookup.ServiceProvider;
+
+/**
+ * Timings and counters for the steps between an edit and the next frame.
+ * Recording is on unless the program is started with -Dbowlshape.metrics=false.
+ * Stages are sent to Java Flight Recorder whether or not metrics are recorded.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@ServiceProvider(service = Metrics.class)
+public class MetricsImpl implements Metrics {
+	/** Percentiles written for each stage */
+	private final static double[] PERCENTILES = {50.0, 90.0, 99.0, 99.9};
+	/** Timer used when nothing is recording */
+	private final static Timer OFF = new Timer() {
+		@Override
+		public void stop() {
+		}
+
+		@Override
+		public void stop(int points, double resolution, double thickness, int sectors) {
+		}
+	};
+
+	private volatile boolean enabled = !"false".equals(System.getProperty("bowlshape.metrics"));
+	private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong editTime = new AtomicLong(0);	// time of the oldest edit not yet painted (0 if none)
+	private final AtomicLong editTime3D = new AtomicLong(0);	// time of the oldest edit not yet built in 3D (0 if none)
+	private volatile long resetMillis = System.currentTimeMillis();	// when recording started
+	private final FlightRecorder jfr = new FlightRecorder();
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enable) {
+		enabled = enable;
+		if (!enable) {
+			editTime.set(0);
+			editTime3D.set(0);
+		}
+	}
+
+	@Override
+	public Timer start(String stage) {
+		boolean recording = jfr.isRecording();
+		if (!enabled && !recording) {
+			return OFF;
+		}
+		return new StageTimer(stage, recording ? jfr.begin(stage) : null);
+	}
+
+	@Override
+	public void record(String stage, long nanos) {
+		if (!enabled) {
+			return;
+		}
+		Histogram h = histograms.get(stage);
+		if (h == null) {
+			Histogram newH = new Histogram();
+			h = histograms.putIfAbsent(stage, newH);
+			if (h == null) {
+				h = newH;
+			}
+		}
+		h.record(nanos);
+	}
+
+	@Override
+	public void count(String counter, long n) {
+		if (!enabled) {
+			return;
+		}
+		AtomicLong c = counters.get(counter);
+		if (c == null) {
+			AtomicLong newC = new AtomicLong(0);
+			c = counters.putIfAbsent(counter, newC);
+			if (c == null) {
+				c = newC;
+			}
+		}
+		c.addAndGet(n);
+	}
+
+	@Override
+	public void markEdit() {
+		if (enabled) {
+			long t = System.nanoTime();
+			editTime.compareAndSet(0, t);		// keep the oldest
+			editTime3D.compareAndSet(0, t);
+		}
+	}
+
+	@Override
+	public void markFrame() {
+		long t = editTime.getAndSet(0);
+		if (t != 0) {
+			record(EDIT_TO_FRAME, System.nanoTime() - t);
+		}
+	}
+
+	@Override
+	public void markFrame3D() {
+		long t = editTime3D.getAndSet(0);
+		if (t != 0) {
+			record(EDIT_TO_3D_FRAME, System.nanoTime() - t);
+		}
+	}
+
+	@Override
+	public String[] getStages() {
+		String[] stages = histograms.keySet().toArray(new String[0]);
+		Arrays.sort(stages);
+		return stages;
+	}
+
+	@Override
+	public Histogram getHistogram(String stage) {
+		return histograms.get(stage);
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		TreeMap<String, Long> map = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> e : counters.entrySet()) {
+			map.put(e.getKey(), e.getValue().get());
+		}
+		return map;
+	}
+
+	@Override
+	public void reset() {
+		for (Histogram h : histograms.values()) {
+			h.reset();
+		}
+		for (AtomicLong c : counters.values()) {
+			c.set(0);
+		}
+		editTime.set(0);
+		editTime3D.set(0);
+		resetMillis = System.currentTimeMillis();
+	}
+
+	@Override
+	public String toJSON() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\n  \"enabled\": ").append(enabled);
+		sb.append(",\n  \"startMillis\": ").append(resetMillis);
+		sb.append(",\n  \"endMillis\": ").append(System.currentTimeMillis());
+		sb.append(",\n  \"unit\": \"ns\"");
+		sb.append(",\n  \"stages\": {");
+		String sep = "\n";
+		for (String stage : getStages()) {
+			Histogram h = histograms.get(stage);
+			sb.append(sep).append("    ").append(quote(stage)).append(": {\"count\": ").append(h.getCount());
+			sb.append(", \"min\": ").append(h.getMin());
+			sb.append(", \"mean\": ").append(Math.round(h.getMean()));
+			for (double p : PERCENTILES) {
+				sb.append(", \"p").append(Double.toString(p).replace(".0", "").replace(".", "")).append("\": ")
+						.append(h.getValueAtPercentile(p));
+			}
+			sb.append(", \"max\": ").append(h.getMax()).append("}");
+			sep = ",\n";
+		}
+		sb.append("\n  },\n  \"counters\": {");
+		sep = "\n";
+		for (Map.Entry<String, Long> e : getCounters().entrySet()) {
+			sb.append(sep).append("    ").append(quote(e.getKey())).append(": ").append(e.getValue());
+			sep = ",\n";
+		}
+		sb.append("\n  }\n}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Quote a string for JSON.
+	 * @param s string
+	 * @return quoted string
+	 */
+	private static String quote(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				sb.append('\\').append(c);
+			} else if (c < ' ') {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * Timer for one stage, with its JFR event if JFR is recording.
+	 */
+	private class StageTimer implements Timer {
+		private final String stage;
+		private final Object event;		// JFR event (null if none)
+		private final long start = System.nanoTime();
+
+		StageTimer(String stage, Object event) {
+			this.stage = stage;
+			this.event = event;
+		}
+
+		@Override
+		public void stop() {
+			stop(0, 0.0, 0.0, 0);
+		}
+
+		@Override
+		public void stop(int points, double resolution, double thickness, int sectors) {
+			record(stage, System.nanoTime() - start);
+			if (event != null) {
+				jfr.commit(event, points, resolution, thickness, sectors);
+			}
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package com.billooms.metrics.api;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of times (or any values of 0 or more) with log-linear buckets.
+ * Values below 64 each have their own bucket, and above that each power of 2 is split into
+ * 32 buckets, so a value read back is within about 3% of the value recorded.
+ * The buckets are fixed, so recording a value never allocates memory,
+ * and values can be recorded from any thread without locking.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class Histogram {
+	private final static int SUB_BITS = 5;			// 2^SUB_BITS buckets for each power of 2
+	private final static int SUB = 1 << SUB_BITS;
+	private final static int N_BUCKETS = (64 - SUB_BITS) * SUB;	// enough for Long.MAX_VALUE
+
+	private final AtomicLongArray counts = new AtomicLongArray(N_BUCKETS);
+	private final AtomicLong count = new AtomicLong(0);
+	private final AtomicLong sum = new AtomicLong(0);
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong max = new AtomicLong(0);
+
+	/**
+	 * Record a value.
+	 * @param v value (values less than 0 are recorded as 0)
+	 */
+	public void record(long v) {
+		if (v < 0) {
+			v = 0;
+		}
+		counts.incrementAndGet(bucket(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+		long m;
+		while (v < (m = min.get()) && !min.compareAndSet(m, v)) {
+		}
+		while (v > (m = max.get()) && !max.compareAndSet(m, v)) {
+		}
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void reset() {
+		for (int i = 0; i < N_BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		min.set(Long.MAX_VALUE);
+		max.set(0);
+	}
+
+	/**
+	 * Get the number of values recorded.
+	 * @return number of values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Get the smallest value recorded.
+	 * @return smallest value, 0 if none
+	 */
+	public long getMin() {
+		return (count.get() == 0) ? 0 : min.get();
+	}
+
+	/**
+	 * Get the largest value recorded.
+	 * @return largest value, 0 if none
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Get the average of the values recorded.
+	 * @return average, 0.0 if none
+	 */
+	public double getMean() {
+		long n = count.get();
+		return (n == 0) ? 0.0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * Get the value that the given percent of the values are at or below.
+	 * @param percent percent (0.0 to 100.0)
+	 * @return value (the top of its bucket, but no more than the largest value), 0 if none
+	 */
+	public long getValueAtPercentile(double percent) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long target = Math.max(1, (long) Math.ceil(Math.min(100.0, Math.max(0.0, percent)) / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < N_BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.min(highest(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Get the bucket for a value.
+	 * @param v value (0 or more)
+	 * @return bucket
+	 */
+	static int bucket(long v) {
+		if (v < 2 * SUB) {
+			return (int) v;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;	// at least 1
+		return (shift + 1) * SUB + (int) (v >>> shift) - SUB;
+	}
+
+	/**
+	 * Get the largest value that goes in a bucket.
+	 * @param i bucket
+	 * @return largest value
+	 */
+	static long highest(int i) {
+		if (i < 2 * SUB) {
+			return i;
+		}
+		int shift = i / SUB - 1;
+		long mantissa = i % SUB + SUB;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+	@Override
+	public String toString() {
+		return "Histogram: " + getCount() + " values, mean " + getMean() + ", max " + getMax();
+	}
+}
@@ -0,0 +1,165 @@
+package com.billooms.metrics.api;
+
+import java.util.Map;
+
+/**
+ * Timings and counters for the steps between an edit and the next frame.
+ * Each timed stage is also sent to Java Flight Recorder when it is recording.
+ * Get the metrics with MetricsLookup.getDefault() (never null).
+ * Time a step with:
+ * <pre>
+ *     Metrics.Timer timer = metrics.start(Metrics.UPDATE_CURVES);
+ *     ...
+ *     timer.stop();
+ * </pre>
+ * All times are in nanoseconds. Everything can be called from any thread,
+ * and when metrics are disabled each call does almost nothing.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public interface Metrics {
+	/** Stage for recalculating the curves of the outline */
+	String UPDATE_CURVES = "updateCurves";
+	/** Stage for fitting and sampling a FittedCurve (only when something changed) */
+	String GET_CURVE_POINTS = "getCurvePoints";
+	/** Stage for offsetting a Curve */
+	String PTS_OFFSET = "ptsOffset";
+	/** Stage for making the mesh of a 3D shape */
+	String MAKE_GEOM = "makeGeom";
+	/** Stage for painting the outline editor */
+	String PAINT = "paint";
+	/** Stage for reading an xml file */
+	String XML_READ = "xmlRead";
+	/** Stage for writing an xml file */
+	String XML_WRITE = "xmlWrite";
+	/** Stage for opening a file (parsing and reading) */
+	String FILE_LOAD = "fileLoad";
+	/** Stage for saving a file */
+	String FILE_SAVE = "fileSave";
+	/** Stage for building the inside and outside meshes of the 3D bowl in the background */
+	String BUILD_3D = "build3D";
+	/** Time from the first edit after a frame to the end of painting the next frame */
+	String EDIT_TO_FRAME = "editToFrame";
+	/** Time from the first edit after a 3D frame to the end of building the next 3D bowl */
+	String EDIT_TO_3D_FRAME = "editTo3DFrame";
+	/** Counter for property changes fired by the outline */
+	String EVENTS = "events";
+	/** Counter for calls to listeners of the outline (events times listeners) */
+	String LISTENER_CALLS = "listenerCalls";
+
+	/**
+	 * Determine if metrics are being recorded.
+	 * @return true=recording
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Turn recording on or off.
+	 * @param enable true=recording
+	 */
+	void setEnabled(boolean enable);
+
+	/**
+	 * Start timing a stage.
+	 * The Java Flight Recorder event for the stage begins here, so it spans the whole stage.
+	 * @param stage name of the stage
+	 * @return timer to stop at the end of the stage (never null)
+	 */
+	Timer start(String stage);
+
+	/**
+	 * Record how long a stage took.
+	 * @param stage name of the stage
+	 * @param nanos time in nanoseconds
+	 */
+	void record(String stage, long nanos);
+
+	/**
+	 * Add to a counter.
+	 * @param counter name of the counter
+	 * @param n amount to add
+	 */
+	void count(String counter, long n);
+
+	/**
+	 * Note that the outline was edited.
+	 * Only the first edit after a frame is kept, so the latency is from the oldest edit not yet shown.
+	 */
+	void markEdit();
+
+	/**
+	 * Note that a frame of the outline editor was painted.
+	 * If there was an edit since the last frame, the time since then is recorded as EDIT_TO_FRAME.
+	 */
+	void markFrame();
+
+	/**
+	 * Note that a new 3D bowl is ready to be shown.
+	 * If there was an edit since the last 3D frame, the time since then is recorded as EDIT_TO_3D_FRAME.
+	 */
+	void markFrame3D();
+
+	/**
+	 * Get the names of the stages that have been recorded.
+	 * @return names in alphabetical order
+	 */
+	String[] getStages();
+
+	/**
+	 * Get the histogram for a stage.
+	 * @param stage name of the stage
+	 * @return histogram, null if the stage has never been recorded
+	 */
+	Histogram getHistogram(String stage);
+
+	/**
+	 * Get the counters.
+	 * @return current value of each counter in alphabetical order
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * Clear all histograms and counters.
+	 */
+	void reset();
+
+	/**
+	 * Get all histograms and counters as JSON.
+	 * @return JSON text
+	 */
+	String toJSON();
+
+	/**
+	 * A stage that is being timed.
+	 * If the stage is abandoned without calling stop(), nothing is recorded.
+	 */
+	interface Timer {
+		/**
+		 * Stop timing the stage and record how long it took.
+		 */
+		void stop();
+
+		/**
+		 * Stop timing the stage, record how long it took, 
+		 * and send the details to Java Flight Recorder.
+		 * Give 0 for any details that don't apply to the stage.
+		 * @param points number of points
+		 * @param resolution resolution (point spacing) of the curves
+		 * @param thickness thickness of the outline (or offset of a curve)
+		 * @param sectors number of radial sectors of a 3D shape
+		 */
+		void stop(int points, double resolution, double thickness, int sectors);
+	}
+}
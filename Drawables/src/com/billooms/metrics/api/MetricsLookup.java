@@ -0,0 +1,113 @@
+package com.billooms.metrics.api;
+
+import java.util.Collections;
+import java.util.Map;
+import org.openide.util.Lookup;
+
+/**
+ * Finds the Metrics service, so callers never have to check for null.
+ * If no Metrics is registered (for example when the classes are used without the module system),
+ * a Metrics that records nothing is used instead.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class MetricsLookup {
+	private final static Metrics NONE = new NoMetrics();
+
+	private MetricsLookup() {
+	}
+
+	/**
+	 * Get the Metrics service.
+	 * @return the registered Metrics, or one that records nothing if there is none
+	 */
+	public static Metrics getDefault() {
+		Metrics metrics = Lookup.getDefault().lookup(Metrics.class);
+		return (metrics != null) ? metrics : NONE;
+	}
+
+	/**
+	 * A Metrics that records nothing.
+	 */
+	private static class NoMetrics implements Metrics {
+		private final static Timer OFF = new Timer() {
+			@Override
+			public void stop() {
+			}
+
+			@Override
+			public void stop(int points, double resolution, double thickness, int sectors) {
+			}
+		};
+
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void setEnabled(boolean enable) {
+		}
+
+		@Override
+		public Timer start(String stage) {
+			return OFF;
+		}
+
+		@Override
+		public void record(String stage, long nanos) {
+		}
+
+		@Override
+		public void count(String counter, long n) {
+		}
+
+		@Override
+		public void markEdit() {
+		}
+
+		@Override
+		public void markFrame() {
+		}
+
+		@Override
+		public void markFrame3D() {
+		}
+
+		@Override
+		public String[] getStages() {
+			return new String[0];
+		}
+
+		@Override
+		public Histogram getHistogram(String stage) {
+			return null;
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return Collections.emptyMap();
+		}
+
+		@Override
+		public void reset() {
+		}
+
+		@Override
+		public String toJSON() {
+			return "{\n  \"enabled\": false\n}\n";
+		}
+	}
+}
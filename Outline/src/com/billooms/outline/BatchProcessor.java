@@ -0,0 +1,419 @@
+package com.billooms.outline;
+
+import com.billooms.drawables.BoundingBox;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Command line program to read, evaluate, and convert whole folders of COrnLathe
+ * and old BowlShape files without the GUI. Files are read on a pool of worker threads,
+ * each with its own OutlineImpl, and a line is printed for each file as soon as it is done,
+ * followed by a summary. For example:
+ * <pre>
+ *     java com.billooms.outline.BatchProcessor -r -convert -outline -o converted archive
+ * </pre>
+ * The exit status is 0 if every file was read, 1 if any failed, and 2 for bad arguments.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class BatchProcessor {
+	// These match the COrnLatheFileType Bundle (which this module can't see)
+	private final static String XML_TYPE = "COrnLathe";
+	private final static String XML_VERSION = "2.0";
+	private final static String DTD_IPL = "\"-//IDN billooms.com//DTD COrnLathe file format 1.0//EN\"";
+	private final static String DTD_URL = "\"http://www.billooms.com/dtds/cornlathe_0.dtd\"";
+	private final static String OLD_TYPE = "BowlShape";
+	private final static String EXTENSION = "xml";
+	private final static String OUTLINE_EXTENSION = "txt";
+
+	private final static String USAGE =
+			"usage: java com.billooms.outline.BatchProcessor [options] file|folder...\n"
+			+ "  -r            also read the files in sub-folders\n"
+			+ "  -convert      write each file in the current COrnLathe format (needs -o)\n"
+			+ "  -outline      write the coordinates of each outline to <name>Outline.txt\n"
+			+ "  -o folder     folder for the files written (default: next to each file)\n"
+			+ "  -threads n    number of worker threads (default: number of processors)";
+	private final static DecimalFormat F3 = new DecimalFormat("0.000");	// only used on the main thread
+
+	private final List<File> inputs = new ArrayList<File>();
+	private File outDir = null;
+	private boolean recurse = false;
+	private boolean convert = false;
+	private boolean outlines = false;
+	private int threads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Read, evaluate, and convert the files given on the command line.
+	 * @param args command line arguments
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+		BatchProcessor batch = new BatchProcessor();
+		try {
+			batch.parseArgs(args);
+		} catch (IllegalArgumentException ex) {
+			System.err.println(ex.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		int failed = batch.run(System.out);
+		System.exit((failed == 0) ? 0 : 1);
+	}
+
+	/**
+	 * Set the options from the command line arguments.
+	 * @param args command line arguments
+	 * @throws IllegalArgumentException if the arguments are not correct
+	 */
+	void parseArgs(String[] args) {
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-r")) {
+				recurse = true;
+			} else if (arg.equals("-convert")) {
+				convert = true;
+			} else if (arg.equals("-outline")) {
+				outlines = true;
+			} else if (arg.equals("-o") && (i + 1 < args.length)) {
+				outDir = new File(args[++i]);
+			} else if (arg.equals("-threads") && (i + 1 < args.length)) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException ex) {
+					throw new IllegalArgumentException("Not a number of threads: " + args[i]);
+				}
+				if (threads < 1) {
+					throw new IllegalArgumentException("Need at least 1 thread");
+				}
+			} else if (arg.startsWith("-")) {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			} else {
+				File f = new File(arg);
+				if (!f.exists()) {
+					throw new IllegalArgumentException("Can't find " + arg);
+				}
+				inputs.add(f);
+			}
+		}
+		if (inputs.isEmpty()) {
+			throw new IllegalArgumentException("No files or folders given");
+		}
+		if (convert && (outDir == null)) {
+			throw new IllegalArgumentException("-convert needs an output folder (-o) so the originals are kept");
+		}
+	}
+
+	/**
+	 * Process all the files, printing a line for each as it finishes and then a summary.
+	 * @param out stream for the report
+	 * @return number of files that failed
+	 */
+	int run(PrintStream out) {
+		List<Job> jobs = new ArrayList<Job>();
+		for (File f : inputs) {
+			if (f.isDirectory()) {
+				findFiles(f, "", jobs);
+			} else {
+				jobs.add(new Job(f, ""));
+			}
+		}
+
+		long t0 = System.nanoTime();
+		out.println("status\ttype\tdots\tthickness\tresolution\tlength\theight\tdiameter\tmsec\tfile");
+		Summary summary = new Summary();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			CompletionService<Result> done = new ExecutorCompletionService<Result>(pool);
+			Map<Future<Result>, Job> submitted = new HashMap<Future<Result>, Job>();
+			for (Job job : jobs) {
+				submitted.put(done.submit(job), job);
+			}
+			for (int i = 0; i < jobs.size(); i++) {
+				Future<Result> future = done.take();
+				Result r;
+				try {
+					r = future.get();
+				} catch (ExecutionException ex) {		// only an Error gets here
+					r = new Result(submitted.get(future).file);
+					r.error = ex.getCause().toString();
+				}
+				out.println(r);
+				out.flush();
+				summary.add(r);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			out.println("Interrupted");
+		} finally {
+			pool.shutdownNow();
+		}
+		summary.print(out, jobs.size(), System.nanoTime() - t0);
+		return summary.failed;
+	}
+
+	/**
+	 * Add a job for each xml file in a folder.
+	 * @param dir folder
+	 * @param rel path of the folder relative to the folder given on the command line ("" or ending in /)
+	 * @param jobs list of jobs
+	 */
+	private void findFiles(File dir, String rel, List<Job> jobs) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File f : files) {
+			if (f.isDirectory()) {
+				if (recurse) {
+					findFiles(f, rel + f.getName() + File.separator, jobs);
+				}
+			} else if (f.getName().toLowerCase().endsWith("." + EXTENSION)) {
+				jobs.add(new Job(f, rel));
+			}
+		}
+	}
+
+	/**
+	 * Get the folder to write the files for an input file.
+	 * @param file input file
+	 * @param rel path relative to the folder given on the command line
+	 * @return folder (which is made if needed)
+	 * @throws IOException if the folder can't be made
+	 */
+	private File getOutDir(File file, String rel) throws IOException {
+		if (outDir == null) {
+			return file.getAbsoluteFile().getParentFile();
+		}
+		File dir = new File(outDir, rel);
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can't make the folder " + dir);
+		}
+		return dir;
+	}
+
+	/**
+	 * Write an outline in the current COrnLathe format (the same as saving it in the program).
+	 * @param outline outline
+	 * @param file file to write
+	 * @throws IOException if the file can't be written
+	 */
+	private static void writeCOrnLathe(OutlineImpl outline, File file) throws IOException {
+		PrintWriter out = new PrintWriter(new FileOutputStream(file));
+		try {
+			out.println("<?xml version=\"1.0\"?>");
+			out.println("<!--");
+			out.println("<!DOCTYPE " + XML_TYPE + " PUBLIC " + DTD_IPL + " " + DTD_URL + ">");
+			out.println("-->");
+			out.println("<" + XML_TYPE + " version=\"" + XML_VERSION + "\"" + ">");
+			outline.writeXML(out);
+			out.println("</" + XML_TYPE + ">");
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Error while writing " + file);
+		}
+	}
+
+	/**
+	 * Write the coordinates of an outline as tab-delimited text (the same as Save Outline).
+	 * @param outline outline
+	 * @param file file to write
+	 * @throws IOException if the file can't be written
+	 */
+	private static void writeOutline(OutlineImpl outline, File file) throws IOException {
+		PrintWriter out = new PrintWriter(new FileOutputStream(file));
+		try {
+			outline.writeOutline(out);
+		} finally {
+			out.close();
+		}
+		if (out.checkError()) {
+			throw new IOException("Error while writing " + file);
+		}
+	}
+
+	/**
+	 * Read, evaluate, and write one file.
+	 */
+	private class Job implements Callable<Result> {
+		final File file;
+		final String rel;		// path relative to the folder given on the command line
+
+		Job(File file, String rel) {
+			this.file = file;
+			this.rel = rel;
+		}
+
+		@Override
+		public Result call() throws Exception {
+			long t0 = System.nanoTime();
+			Result r = new Result(file);
+			try {
+				DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+				builder.setErrorHandler(new DefaultHandler());	// errors are reported with the file, not on stderr
+				Document xmldoc = builder.parse(file);
+				Element root = xmldoc.getDocumentElement();
+				r.type = root.getTagName();
+				OutlineImpl outline = new OutlineImpl();
+				outline.setParallel(threads == 1);	// otherwise the files already keep every processor busy
+				if (root.getTagName().equals(XML_TYPE)) {
+					if (Double.parseDouble(root.getAttribute("version")) > Double.parseDouble(XML_VERSION)) {
+						throw new Exception("File was written with a newer version of " + XML_TYPE);
+					}
+					outline.readXML(root, file);
+				} else if (root.getTagName().equals(OLD_TYPE)) {
+					outline.readOldXML(root, file);
+				} else {
+					r.skipped = true;			// some other kind of xml file
+					return r;
+				}
+				r.dots = outline.getNumPts();
+				r.thickness = outline.getThickness();
+				r.resolution = outline.getResolution();
+				r.length = outline.getLocation().isInside() ? outline.getInsideLength() : outline.getOutsideLength();
+				if (r.dots > 0) {
+					BoundingBox bb = outline.getBoundingBox();
+					r.height = bb.getHeight();
+					r.diameter = 2.0 * Math.max(Math.abs(bb.min.x), Math.abs(bb.max.x));
+				}
+
+				String name = file.getName().substring(0, file.getName().length() - EXTENSION.length() - 1);
+				File dir = getOutDir(file, rel);
+				if (convert) {
+					File xmlFile = new File(dir, file.getName());
+					if (xmlFile.getCanonicalFile().equals(file.getCanonicalFile())) {
+						throw new IOException("Won't write over the original file");
+					}
+					writeCOrnLathe(outline, xmlFile);
+					r.converted = true;
+				}
+				if (outlines) {
+					writeOutline(outline, new File(dir, name + "Outline." + OUTLINE_EXTENSION));
+					r.outlined = true;
+				}
+			} catch (Exception ex) {
+				r.error = (ex.getMessage() != null) ? ex.getMessage() : ex.toString();
+			}
+			r.nanos = System.nanoTime() - t0;
+			return r;
+		}
+	}
+
+	/**
+	 * What happened to one file.
+	 */
+	private static class Result {
+		final File file;
+		String type = "";
+		String error = null;		// null if no error
+		boolean skipped = false;
+		boolean converted = false;
+		boolean outlined = false;
+		int dots = 0;
+		double thickness, resolution, length, height, diameter;
+		long nanos = 0;
+
+		Result(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public String toString() {
+			if (error != null) {
+				return "ERROR\t" + type + "\t\t\t\t\t\t\t" + nanos / 1000000 + "\t" + file + "\t" + error;
+			}
+			if (skipped) {
+				return "SKIP\t" + type + "\t\t\t\t\t\t\t" + nanos / 1000000 + "\t" + file;
+			}
+			return "OK\t" + type + "\t" + dots
+					+ "\t" + F3.format(thickness) + "\t" + F3.format(resolution)
+					+ "\t" + F3.format(length) + "\t" + F3.format(height) + "\t" + F3.format(diameter)
+					+ "\t" + nanos / 1000000 + "\t" + file;
+		}
+	}
+
+	/**
+	 * Totals for the report at the end.
+	 */
+	private class Summary {
+		int ok = 0, failed = 0, skipped = 0, converted = 0, outlined = 0;
+		final Map<String, Integer> types = new TreeMap<String, Integer>();
+		final List<Result> failures = new ArrayList<Result>();
+		long nanos = 0;
+
+		void add(Result r) {
+			nanos += r.nanos;
+			if (r.error != null) {
+				failed++;
+				failures.add(r);
+			} else if (r.skipped) {
+				skipped++;
+			} else {
+				ok++;
+				Integer n = types.get(r.type);
+				types.put(r.type, (n == null) ? 1 : n + 1);
+			}
+			if (r.converted) {
+				converted++;
+			}
+			if (r.outlined) {
+				outlined++;
+			}
+		}
+
+		void print(PrintStream out, int total, long elapsed) {
+			out.println();
+			out.println("Files:     " + total);
+			out.println("Read:      " + ok + " " + types);
+			out.println("Skipped:   " + skipped + " (not " + XML_TYPE + " or " + OLD_TYPE + " files)");
+			out.println("Failed:    " + failed);
+			if (convert) {
+				out.println("Converted: " + converted + " to " + outDir);
+			}
+			if (outlines) {
+				out.println("Outlines:  " + outlined);
+			}
+			out.println("Time:      " + F3.format(elapsed / 1.0e9) + " sec on " + threads + " threads"
+					+ ((total == 0) ? "" : " (" + F3.format(nanos / 1.0e6 / total) + " msec per file)"));
+			for (Result r : failures) {
+				out.println("  " + r.file + ": " + r.error);
+			}
+		}
+	}
+}
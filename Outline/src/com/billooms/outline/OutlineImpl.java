@@ -6,7 +6,10 @@ import com.billooms.drawables.BoundingBox;
 import com.billooms.drawables.Curve;
 import com.billooms.drawables.Dot;
 import com.billooms.drawables.FittedCurve;
+import com.billooms.drawables.PointList;
 import com.billooms.drawables.Pt;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
@@ -16,6 +19,9 @@ import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.PrintWriter;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
 import org.openide.util.lookup.ServiceProvider;
@@ -42,13 +48,24 @@ import org.w3c.dom.NodeList;
  */
 @ServiceProvider(service = Outline.class)
 public class OutlineImpl implements Outline, PropertyChangeListener {
-	private final static DecimalFormat F3 = new DecimalFormat("0.000");
-	private final static DecimalFormat F4 = new DecimalFormat("0.0000");
+	/** DecimalFormat is not thread safe, and outlines are written from several threads by BatchProcessor */
+	private final static ThreadLocal<DecimalFormat> F3 = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("0.000");
+		}
+	};
+	private final static ThreadLocal<DecimalFormat> F4 = new ThreadLocal<DecimalFormat>() {
+		@Override
+		protected DecimalFormat initialValue() {
+			return new DecimalFormat("0.0000");
+		}
+	};
+	private final static Metrics METRICS = MetricsLookup.getDefault();
     private final static Color INSIDE_CURVE_COLOR = Color.MAGENTA;
     private final static Color OUTSIDE_CURVE_COLOR = Color.ORANGE;
 	private final static boolean FIRE_PROP_CHANGE = true;
 	
-    private final static int DEFAULT_PTS = 3;
     private final static Point2D.Double[] INIT_PTS = {new Point2D.Double(0.000, 0.000),    // Initial points Bottom
                                                new Point2D.Double(0.700, 0.300),
                                                new Point2D.Double(1.000, 1.000)};	// Top
@@ -56,23 +73,143 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	private Location dotLocation = DEFAULT_DOT_LOCATION;	// location of digitized dots
 	private double thickness = DEFAULT_THICKNESS;
 	private double pointSpacing = DEFAULT_RESOLUTION;
+	private boolean adaptive = false;		// true: points are spaced by tolerance instead of pointSpacing
+	private double tolerance = DEFAULT_TOLERANCE;
 	private FittedCurve dotCurve = null;		// digitized dots used for curve fitting
 	private Curve insideCurve = null;			// inside surfaces
 	private Curve outsideCurve =null;			// outside surfaces
+	private long curvesSerial = -1;			// samples serial of the dot curve points used for the curves (-1 if none)
 	
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
+	private final AtomicReference<OutlineSnapshot> snapshot = new AtomicReference<OutlineSnapshot>();	// latest snapshot published
+	private long snapshotVersion = 0;			// version of the latest snapshot (only changed by the editing thread)
+	private int editDepth = 0;					// number of nested edits in progress
+	private boolean curvesPending = false;		// true if the curves need updating when the edit ends
+	private ArrayList<PropertyChangeEvent> pendingEvents = new ArrayList<PropertyChangeEvent>();	// changes saved until the edit ends
 
 	/**
 	 * Create an empty outline of the shape.
 	 */
 	public OutlineImpl() {
 		dotCurve = new FittedCurve(DOT_CURVE_COLOR);
-		insideCurve = new Curve(new Point2D.Double[0], INSIDE_CURVE_COLOR);
-		outsideCurve = new Curve(new Point2D.Double[0], OUTSIDE_CURVE_COLOR);
-        for (int i = 0; i < DEFAULT_PTS; i++) {		// Initialize points for default shape
-			addPt(INIT_PTS[i], !FIRE_PROP_CHANGE);
-        }
-		updateCurves();
+		dotCurve.setParallel(true);		// only used for very large curves
+		setSampling();
+		insideCurve = new Curve(new PointList(), INSIDE_CURVE_COLOR);
+		outsideCurve = new Curve(new PointList(), OUTSIDE_CURVE_COLOR);
+		setPoints(INIT_PTS, !FIRE_PROP_CHANGE);	// Initialize points for default shape
+	}
+
+	/**
+	 * Set whether very large curves are sampled on several threads (on by default).
+	 * The batch processor turns this off when it already reads a file on each processor.
+	 * @param p true=parallel, false=sampled on the calling thread
+	 */
+	void setParallel(boolean p) {
+		dotCurve.setParallel(p);
+	}
+
+	/**
+	 * Set how the points of the dot curve are spaced from adaptive and tolerance.
+	 * Fixed resolution curves are evenly spaced along the curve.
+	 */
+	private void setSampling() {
+		dotCurve.setTolerance(tolerance);
+		dotCurve.setSampling(adaptive ? FittedCurve.Sampling.ADAPTIVE : FittedCurve.Sampling.ARC_LENGTH);
+	}
+
+	/**
+	 * The curves need to be updated after something has been changed.
+	 * Inside an edit this waits until the edit ends.
+	 */
+	private void curvesChanged() {
+		METRICS.markEdit();
+		if (editDepth > 0) {
+			curvesPending = true;
+		} else {
+			updateCurves();
+		}
+	}
+
+	/**
+	 * Fire a property change, or save it until the edit ends.
+	 * @param name property name
+	 * @param oldValue old value
+	 * @param newValue new value
+	 */
+	private void fire(String name, Object oldValue, Object newValue) {
+		if (editDepth > 0) {
+			if ((oldValue == null) || !oldValue.equals(newValue)) {		// same as PropertyChangeSupport
+				pendingEvents.add(new PropertyChangeEvent(this, name, oldValue, newValue));
+			}
+		} else {
+			deliver(new PropertyChangeEvent(this, name, oldValue, newValue));
+		}
+	}
+
+	/**
+	 * Fire a property change to the listeners now, and count it.
+	 * @param evt property change
+	 */
+	private void deliver(PropertyChangeEvent evt) {
+		Object oldValue = evt.getOldValue();
+		if ((oldValue == null) || !oldValue.equals(evt.getNewValue())) {	// same as PropertyChangeSupport
+			METRICS.markEdit();
+			METRICS.count(Metrics.EVENTS, 1);
+			METRICS.count(Metrics.LISTENER_CALLS, pcs.getPropertyChangeListeners().length);
+			pcs.firePropertyChange(evt);
+		}
+	}
+
+	/**
+	 * Start an edit made of several changes.
+	 * Until the matching endEdit(), the curves are not recalculated and no property changes are fired.
+	 * Edits can be nested, and only the outermost endEdit() updates.
+	 */
+	@Override
+	public synchronized void beginEdit() {
+		editDepth++;
+	}
+
+	/**
+	 * End an edit started with beginEdit().
+	 * When the outermost edit ends, the curves are recalculated once. 
+	 * A single change is fired as it was, and more than one are fired as one
+	 * PROP_BATCH property change with the list of PropertyChangeEvents as the new value.
+	 */
+	@Override
+	public synchronized void endEdit() {
+		if (editDepth == 0) {
+			throw new IllegalStateException("endEdit() without beginEdit()");
+		}
+		if (--editDepth > 0) {
+			return;
+		}
+		if (curvesPending) {
+			curvesPending = false;
+			updateCurves();
+		}
+		ArrayList<PropertyChangeEvent> events = pendingEvents;
+		pendingEvents = new ArrayList<PropertyChangeEvent>();
+		if (events.size() == 1) {
+			deliver(events.get(0));
+		} else if (events.size() > 1) {
+			deliver(new PropertyChangeEvent(this, PROP_BATCH, null, events));
+		}
+	}
+
+	/**
+	 * Make several changes as one edit.
+	 * This is the same as beginEdit(), run the changes, then endEdit() (even if the changes fail).
+	 * @param edit the changes
+	 */
+	@Override
+	public synchronized void batch(Runnable edit) {
+		beginEdit();
+		try {
+			edit.run();
+		} finally {
+			endEdit();
+		}
 	}
 
 	/**
@@ -82,26 +219,68 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
         if (dotCurve == null) {		// in case there are not yet any points
             return;
         }
+		Metrics.Timer timer = METRICS.start(Metrics.UPDATE_CURVES);
 		
 		double delta;
 		// Update the inside and outside curves
+		// Only the segments near an edit are recalculated, and the unchanged points 
+		// at each end are spliced with the new points.
+		// The points may have been sampled again in between (by painting), 
+		// so compare with the points used the last time the curves were updated.
+		PointList pts = dotCurve.getCurvePointList(pointSpacing);
+		int head = dotCurve.getUnchangedHead(curvesSerial);
+		int tail = dotCurve.getUnchangedTail(curvesSerial);
+		curvesSerial = dotCurve.getSamplesSerial();
+		PointList offsetPts;		// a new list, so the snapshot can keep it without a copy
 		if (dotLocation.isInside()) {
-			insideCurve.setPoints(dotCurve.getCurvePoints(pointSpacing));
+			insideCurve.setPoints(pts, head, tail);
 			if (dotLocation.isFront()) {
 				delta = thickness;
 			} else {
 				delta = -thickness;
 			}
-			outsideCurve.setPoints(insideCurve.ptsOffset(delta));
+			offsetPts = insideCurve.offsetPointList(delta);
+			outsideCurve.setPoints(offsetPts);
+			publish(pts.copy(), offsetPts);		// the dot curve reuses pts, so it is copied
 		} else {
-			outsideCurve.setPoints(dotCurve.getCurvePoints(pointSpacing));
+			outsideCurve.setPoints(pts, head, tail);
 			if (dotLocation.isFront()) {
 				delta = -thickness;
 			} else {
 				delta = thickness;
 			}
-			insideCurve.setPoints(outsideCurve.ptsOffset(delta));
+			offsetPts = outsideCurve.offsetPointList(delta);
+			insideCurve.setPoints(offsetPts);
+			publish(offsetPts, pts.copy());
 		}
+		timer.stop(pts.size(), pointSpacing, thickness, 0);
+	}
+
+	/**
+	 * Publish a new snapshot of the outline after the curves have been updated.
+	 * Nothing may change the given points after this.
+	 * @param insidePts points of the inside curve
+	 * @param outsidePts points of the outside curve
+	 */
+	private void publish(PointList insidePts, PointList outsidePts) {
+		List<Pt> dots = dotCurve.getAllPoints();
+		Point2D.Double[] dotPts = new Point2D.Double[dots.size()];
+		for (int i = 0; i < dotPts.length; i++) {
+			dotPts[i] = dots.get(i).getPos();		// PointList copies the coordinates
+		}
+		snapshot.set(new OutlineSnapshot(++snapshotVersion, new PointList(dotPts), 
+				insidePts, outsidePts, thickness, pointSpacing, dotLocation));
+	}
+
+	/**
+	 * Get the latest snapshot of the outline.
+	 * A snapshot is published when an update of the curves is finished (at the end of an edit),
+	 * so any thread can call this and get a consistent outline without locking.
+	 * @return latest snapshot
+	 */
+	@Override
+	public OutlineSnapshot getSnapshot() {
+		return snapshot.get();
 	}
 
     /**
@@ -123,8 +302,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 
 	@Override
 	public void propertyChange(PropertyChangeEvent evt) {
-		updateCurves();
-		pcs.firePropertyChange(evt.getPropertyName(), evt.getOldValue(), evt.getNewValue());	// pass the info through for OutlineEditor
+		curvesChanged();
+		fire(evt.getPropertyName(), evt.getOldValue(), evt.getNewValue());	// pass the info through for OutlineEditor
 	}
 	
 	/**
@@ -217,9 +396,42 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	protected synchronized void addPt(Point2D.Double p, boolean fire) {
 		Pt pt = dotCurve.insertPt(p);
 		pt.addPropertyChangeListener(this);
-		updateCurves();
+		curvesChanged();
+		if (fire) {
+			fire(PROP_ADDPT, null, p);
+		}
+	}
+
+	/**
+	 * Replace all outline points with the given points.
+	 * The points are sorted from bottom (first point) to top (last point) 
+	 * and the curves are calculated only once.
+	 * This fires a single PROP_SETPTS property change with the new points.
+	 * @param pts new points
+	 */
+	@Override
+	public synchronized void setPoints(Point2D.Double[] pts) {
+		setPoints(pts, FIRE_PROP_CHANGE);
+	}
+
+	/**
+	 * Replace all outline points with the given points.
+	 * This fires a PROP_SETPTS property change with the new points if fire is true.
+	 * @param pts new points
+	 * @param fire 
+	 */
+	protected synchronized void setPoints(Point2D.Double[] pts, boolean fire) {
+		clear(!FIRE_PROP_CHANGE);
+		Point2D.Double[] copies = new Point2D.Double[pts.length];
+		for (int i = 0; i < pts.length; i++) {
+			copies[i] = new Point2D.Double(pts[i].x, pts[i].y);	// the dots move their points
+		}
+		for (Dot dot : dotCurve.insertPts(copies)) {
+			dot.addPropertyChangeListener(this);
+		}
+		curvesChanged();
 		if (fire) {
-			pcs.firePropertyChange(PROP_ADDPT, null, p);
+			fire(PROP_SETPTS, null, pts);
 		}
 	}
 
@@ -232,8 +444,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	public synchronized void deletePt(Dot pt) {
 		dotCurve.deletePt(pt);
 		pt.removePropertyChangeListener(this);
-		updateCurves();
-		pcs.firePropertyChange(PROP_DELETEPT, pt, null);
+		curvesChanged();
+		fire(PROP_DELETEPT, pt, null);
 	}
 
 	/**
@@ -257,8 +469,13 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 		dotCurve.clear();
 		insideCurve.clear();
 		outsideCurve.clear();
+		if (editDepth > 0) {
+			curvesPending = true;			// published when the edit ends
+		} else {
+			publish(new PointList(), new PointList());
+		}
 		if (fire) {
-			pcs.firePropertyChange(PROP_CLEAR, null, null);
+			fire(PROP_CLEAR, null, null);
 		}
 	}
 
@@ -313,8 +530,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 		if (t != thickness) {
 			double old = thickness;
 			this.thickness = Math.max(0.0, t);	// don't go below 0.0
-			updateCurves();
-			pcs.firePropertyChange(PROP_THICKNESS, old, thickness);
+			curvesChanged();
+			fire(PROP_THICKNESS, old, thickness);
 		}
 	}
 
@@ -337,8 +554,60 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 		if (r != pointSpacing) {
 			double old = pointSpacing;
 			this.pointSpacing = Math.max(MIN_RESOLUTION, r);	// don't go below minimum
-			updateCurves();
-			pcs.firePropertyChange(PROP_RESOLUTION, old, pointSpacing);
+			curvesChanged();
+			fire(PROP_RESOLUTION, old, pointSpacing);
+		}
+	}
+
+	/**
+	 * Determine if the curves are adaptive.
+	 * Adaptive curves have more points where they bend more, 
+	 * and are never farther than the tolerance from the lines between points.
+	 * Otherwise the points are evenly spaced at the resolution.
+	 * @return true=adaptive, false=fixed resolution
+	 */
+	@Override
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Set whether the curves are adaptive or have a fixed resolution.
+	 * This fires a PROP_ADAPTIVE property change with the old and new values.
+	 * @param a true=adaptive, false=fixed resolution
+	 */
+	@Override
+	public void setAdaptive(boolean a) {
+		if (a != adaptive) {
+			adaptive = a;
+			setSampling();
+			curvesChanged();
+			fire(PROP_ADAPTIVE, !a, a);
+		}
+	}
+
+	/**
+	 * Get the tolerance of adaptive curves.
+	 * @return farthest the curve can be from the lines between points
+	 */
+	@Override
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Set the tolerance of adaptive curves.
+	 * This fires a PROP_TOLERANCE property change with the old and new values.
+	 * @param tol farthest the curve can be from the lines between points
+	 */
+	@Override
+	public void setTolerance(double tol) {
+		if (tol != tolerance) {
+			double old = tolerance;
+			this.tolerance = Math.max(MIN_TOLERANCE, tol);	// don't go below minimum
+			setSampling();
+			curvesChanged();
+			fire(PROP_TOLERANCE, old, tolerance);
 		}
 	}
 	
@@ -384,9 +653,7 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 			return;
 		}
 		Dot d = (Dot) dotCurve.getPt(1);
-		d.setPos(new Point2D.Double(dotCurve.getPt(0).getPos().x, d.getPos().y));
-		updateCurves();
-		pcs.firePropertyChange(PROP_MOVEPT, null, d);
+		moveDot(d, new Point2D.Double(dotCurve.getPt(0).getPos().x, d.getPos().y));
 	}
 
 	/**
@@ -404,9 +671,25 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 			return;
 		}
 		Dot d = (Dot) dotCurve.getPt(1);
-		d.setPos(new Point2D.Double(d.getPos().x, dotCurve.getPt(0).getPos().y));
-		updateCurves();
-		pcs.firePropertyChange(PROP_MOVEPT, null, d);
+		moveDot(d, new Point2D.Double(d.getPos().x, dotCurve.getPt(0).getPos().y));
+	}
+
+	/**
+	 * Move a dot and fire a single PROP_MOVEPT property change with the dot.
+	 * The change that the dot curve fires for the move is left out.
+	 * @param d dot
+	 * @param pos new position
+	 */
+	private void moveDot(Dot d, Point2D.Double pos) {
+		beginEdit();
+		try {
+			int n = pendingEvents.size();
+			d.setPos(pos);							// the curves are updated when the edit ends
+			pendingEvents.subList(n, pendingEvents.size()).clear();
+			fire(PROP_MOVEPT, null, d);
+		} finally {
+			endEdit();
+		}
 	}
 
 	/**
@@ -418,8 +701,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	public synchronized double offsetTopZero() {
 		double delta = dotCurve.getBoundingBox().max.y;
 		dotCurve.offsetY(delta);					// move the dotCurve
-		updateCurves();								// update the curves
-		pcs.firePropertyChange(PROP_OFFSET, null, null);
+		curvesChanged();							// update the curves
+		fire(PROP_OFFSET, null, null);
 		return delta;
 	}
 
@@ -432,8 +715,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	public synchronized double offsetBottomZero() {
 		double delta = dotCurve.getBoundingBox().min.y;
 		dotCurve.offsetY(delta);					// move the dotCurve
-		updateCurves();								// update the curves
-		pcs.firePropertyChange(PROP_OFFSET, null, null);
+		curvesChanged();							// update the curves
+		fire(PROP_OFFSET, null, null);
 		return delta;
 	}
 
@@ -445,8 +728,8 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	@Override
 	public synchronized void invert() {
 		dotCurve.invert();
-		updateCurves();								// update the curves
-		pcs.firePropertyChange(PROP_INVERT, null, null);
+		curvesChanged();							// update the curves
+		fire(PROP_INVERT, null, null);
 	}
 
 	/**
@@ -455,23 +738,18 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	 */
 	@Override
 	public void writeOutline(PrintWriter out) {
-		Point2D.Double[] pts;
-		double len;
-		if (dotLocation.isInside()) {
-			pts = insideCurve.getPoints();
-			len = insideCurve.getLength();
-		} else {
-			pts = outsideCurve.getPoints();
-			len = outsideCurve.getLength();
-		}
-		out.println("Length:" + "\t" + F3.format(len));
+		OutlineSnapshot snap = getSnapshot();
+		PointList pts = snap.getLocation().isInside() ? snap.getInsidePoints() : snap.getOutsidePoints();
+		double len = pts.getLength();
+		out.println("Length:" + "\t" + F3.get().format(len));
 		out.println();
 		out.println("X" + "\t" + "Z" + "\t" + "Diameter" + "\t" + "Circumference");
-		for (int i = pts.length - 1; i >= 0; i--) {
-			out.println(F3.format(pts[i].x) +
-					"\t" + F3.format(pts[i].y) +
-					"\t" + F3.format(Math.abs(2.0 * pts[i].x)) +
-					"\t" + F3.format(Math.abs(2.0 * Math.PI * pts[i].x)));
+		for (int i = pts.size() - 1; i >= 0; i--) {
+			double x = pts.getX(i);
+			out.println(F3.get().format(x) +
+					"\t" + F3.get().format(pts.getY(i)) +
+					"\t" + F3.get().format(Math.abs(2.0 * x)) +
+					"\t" + F3.get().format(Math.abs(2.0 * Math.PI * x)));
 		}
 	}
 	
@@ -483,7 +761,11 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	 */
 	@Override
 	public void readXML(Element root, File file) {
+		Metrics.Timer timer = METRICS.start(Metrics.XML_READ);
 		clear(!FIRE_PROP_CHANGE);	// clear() but without firePropertyChange
+		adaptive = false;			// only files with a tolerance are adaptive
+		tolerance = DEFAULT_TOLERANCE;
+		setSampling();
 		
 		double version = Double.parseDouble(root.getAttribute("version"));	// Note: this won't work for 2.10, etc.
 				
@@ -506,6 +788,11 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 						dotLocation = Location.valueOf(element.getAttribute("dotLocation"));
 						thickness = Double.parseDouble(element.getAttribute("t"));
 						pointSpacing = Double.parseDouble(element.getAttribute("pointSpacing"));
+						adaptive = element.hasAttribute("tolerance");	// only written for adaptive curves
+						if (adaptive) {
+							tolerance = Math.max(MIN_TOLERANCE, Double.parseDouble(element.getAttribute("tolerance")));
+						}
+						setSampling();
 					}
 					NodeList dotNodes = element.getChildNodes();
 					for (int j = 0; j < dotNodes.getLength(); j++) {
@@ -519,11 +806,12 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 							}
 						}
 					}
-					updateCurves();
+					curvesChanged();
 				}
 			}
 		}		
-		pcs.firePropertyChange(PROP_XML, null, file.getName());
+		timer.stop(dotCurve.getSize(), pointSpacing, thickness, 0);
+		fire(PROP_XML, null, file.getName());
 	}
 	
 	/**
@@ -533,7 +821,11 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	 */
 	@Override
 	public void readOldXML(Element root, File file) {
+		Metrics.Timer timer = METRICS.start(Metrics.XML_READ);
 		clear(!FIRE_PROP_CHANGE);	// clear() but without firePropertyChange
+		adaptive = false;			// only files with a tolerance are adaptive
+		tolerance = DEFAULT_TOLERANCE;
+		setSampling();
 		
 		NodeList nodes = root.getChildNodes();
 		for (int i = 0; i < nodes.getLength(); i++) {
@@ -552,10 +844,11 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 							}
 						}
 					}
-					updateCurves();
+					curvesChanged();
 				}
 			}
 		}	
+		timer.stop(dotCurve.getSize(), pointSpacing, thickness, 0);
 	}
 
 	/**
@@ -564,19 +857,22 @@ public class OutlineImpl implements Outline, PropertyChangeListener {
 	 */
 	@Override
 	public void writeXML(PrintWriter out) {
+		Metrics.Timer timer = METRICS.start(Metrics.XML_WRITE);
 		if (dotCurve.getSize() != 0) {
 			out.println("  <dotCurve nPts='" + dotCurve.getSize() 
 					+ "' dotLocation='" + dotLocation.toString() 
-					+ "' t='" + F3.format(thickness) 
-					+ "' pointSpacing='" + F3.format(pointSpacing)
+					+ "' t='" + F3.get().format(thickness) 
+					+ "' pointSpacing='" + F3.get().format(pointSpacing)
+					+ (adaptive ? "' tolerance='" + F4.get().format(tolerance) : "")
 					+ "'>");
 			for (int i = 0; i < dotCurve.getSize(); i++) {
 				double x = dotCurve.getPt(i).getPos().x;
 				double z = dotCurve.getPt(i).getPos().y;
-				out.println("    <point x='" + F4.format(x) + "' z='" + F4.format(z) + "'/>");
+				out.println("    <point x='" + F4.get().format(x) + "' z='" + F4.get().format(z) + "'/>");
 			}
 			out.println("  </dotCurve>");
 		}
+		timer.stop(dotCurve.getSize(), pointSpacing, thickness, 0);
 	}
 
 }
@@ -0,0 +1,100 @@
+package com.billooms.outline.api;
+
+import com.billooms.drawables.Pt;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import javax.swing.Timer;
+
+/**
+ * A PropertyChangeListener that passes Outline property changes on to another listener
+ * no faster than a given rate while a point is being dragged.
+ * Drag events (Pt.PROP_DRAG) in between are dropped and only the latest one is passed on.
+ * All other events (including the final Pt.PROP_MOVE) are always passed on immediately.
+ * Drag events are expected on the event dispatch thread (as they come from the mouse).
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class CoalescingListener implements PropertyChangeListener {
+	/** Delay for passing on one drag event per display frame (currently set to 16 msec) */
+	public final static int FRAME_DELAY = 16;
+
+	private final PropertyChangeListener target;	// listener that gets the events
+	private final Timer timer;						// runs while drag events are being throttled
+	private PropertyChangeEvent pending = null;		// latest drag event not yet passed on
+
+	/**
+	 * Pass property changes on to the given listener,
+	 * with drag events no closer together than the given delay.
+	 * @param target listener that gets the events
+	 * @param delay minimum time between drag events in msec
+	 */
+	public CoalescingListener(PropertyChangeListener target, int delay) {
+		this.target = target;
+		timer = new Timer(delay, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (pending == null) {
+					timer.stop();		// nothing more has been dragged
+				} else {
+					deliver(pending);
+				}
+			}
+		});
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Pass property changes on to the given listener,
+	 * with no more than one drag event per display frame.
+	 * @param target listener that gets the events
+	 */
+	public CoalescingListener(PropertyChangeListener target) {
+		this(target, FRAME_DELAY);
+	}
+
+	/**
+	 * Get the listener that gets the events.
+	 * @return listener
+	 */
+	public PropertyChangeListener getTarget() {
+		return target;
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt) {
+		if ((evt != null) && Pt.PROP_DRAG.equals(evt.getPropertyName())) {
+			if (timer.isRunning()) {
+				pending = evt;		// replaces any earlier drag event
+			} else {
+				deliver(evt);		// first drag event goes right away
+				timer.start();
+			}
+			return;
+		}
+		timer.stop();				// any other event supersedes a pending drag
+		deliver(evt);
+	}
+
+	/**
+	 * Pass the event on to the target.
+	 * @param evt event
+	 */
+	private void deliver(PropertyChangeEvent evt) {
+		pending = null;
+		target.propertyChange(evt);
+	}
+}
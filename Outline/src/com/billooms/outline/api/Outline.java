@@ -43,10 +43,16 @@ public interface Outline {
 	String PROP_DELETEPT = PROP_PREFIX + "DeletePoint";
 	/** Property name used when clearing all points */
 	String PROP_CLEAR = PROP_PREFIX + "Clear";
+	/** Property name used when replacing all points at once */
+	String PROP_SETPTS = PROP_PREFIX + "SetPoints";
 	/** Property name used when changing resolution */
 	String PROP_THICKNESS = PROP_PREFIX + "Thickness";
 	/** Property name used when changing thickness */
 	String PROP_RESOLUTION = PROP_PREFIX + "Resolution";
+	/** Property name used when changing between a fixed resolution and adaptive curves */
+	String PROP_ADAPTIVE = PROP_PREFIX + "Adaptive";
+	/** Property name used when changing the tolerance of adaptive curves */
+	String PROP_TOLERANCE = PROP_PREFIX + "Tolerance";
 	/** Property name used when offsetting the curve */
 	String PROP_OFFSET = PROP_PREFIX + "Offset";
 	/** Property name used when inverting the curve */
@@ -55,6 +61,8 @@ public interface Outline {
 	String PROP_CUTTER = PROP_PREFIX + "Cutter";
 	/** Property name used when reading an XML file */
 	String PROP_XML = PROP_PREFIX + "XML";
+	/** Property name used when an edit with more than one change ends (new value is the list of changes) */
+	String PROP_BATCH = PROP_PREFIX + "Batch";
 	
 	/** Default thickness of the shape (currently set to 0.100) */
 	double DEFAULT_THICKNESS = 0.100;
@@ -62,6 +70,10 @@ public interface Outline {
     double DEFAULT_RESOLUTION = 0.020;
 	/** Minimum permissible curve resolution (currently set to 0.001) */
     double MIN_RESOLUTION = 0.001;
+	/** Default tolerance of adaptive curves (currently set to 0.001) */
+	double DEFAULT_TOLERANCE = 0.001;
+	/** Minimum permissible tolerance of adaptive curves (currently set to 0.0001) */
+	double MIN_TOLERANCE = 0.0001;
 	/** Default location for dots defining the curve */
 	Location DEFAULT_DOT_LOCATION = Location.FRONT_OUTSIDE;
 	/** Color of the dotCurve (currently set to LIGHT_GRAY) */
@@ -186,6 +198,37 @@ public interface Outline {
 	 */
 	void addPt(Point2D.Double p);
 
+	/**
+	 * Replace all outline points with the given points.
+	 * The points are sorted from bottom (first point) to top (last point) 
+	 * and the curves are calculated only once, so this is much faster than adding them one at a time.
+	 * This fires a single PROP_SETPTS property change with the new points.
+	 * @param pts new points
+	 */
+	void setPoints(Point2D.Double[] pts);
+
+	/**
+	 * Start an edit made of several changes.
+	 * Until the matching endEdit(), the curves are not recalculated and no property changes are fired.
+	 * Edits can be nested, and only the outermost endEdit() updates.
+	 */
+	void beginEdit();
+
+	/**
+	 * End an edit started with beginEdit().
+	 * When the outermost edit ends, the curves are recalculated once. 
+	 * A single change is fired as it was, and more than one are fired as one
+	 * PROP_BATCH property change with the list of PropertyChangeEvents as the new value.
+	 */
+	void endEdit();
+
+	/**
+	 * Make several changes as one edit.
+	 * This is the same as beginEdit(), run the changes, then endEdit() (even if the changes fail).
+	 * @param edit the changes
+	 */
+	void batch(Runnable edit);
+
 	/**
 	 * Delete the given point.
 	 * This fires a PROP_DELETEPT property change with the old point.
@@ -239,6 +282,35 @@ public interface Outline {
 	 * @param r new resolution of the curves
 	 */
 	void setResolution(double r);
+
+	/**
+	 * Determine if the curves are adaptive.
+	 * Adaptive curves have more points where they bend more, 
+	 * and are never farther than the tolerance from the lines between points.
+	 * Otherwise the points are evenly spaced at the resolution.
+	 * @return true=adaptive, false=fixed resolution
+	 */
+	boolean isAdaptive();
+
+	/**
+	 * Set whether the curves are adaptive or have a fixed resolution.
+	 * This fires a PROP_ADAPTIVE property change with the old and new values.
+	 * @param a true=adaptive, false=fixed resolution
+	 */
+	void setAdaptive(boolean a);
+
+	/**
+	 * Get the tolerance of adaptive curves.
+	 * @return farthest the curve can be from the lines between points
+	 */
+	double getTolerance();
+
+	/**
+	 * Set the tolerance of adaptive curves.
+	 * This fires a PROP_TOLERANCE property change with the old and new values.
+	 * @param tol farthest the curve can be from the lines between points
+	 */
+	void setTolerance(double tol);
 	
 	/**
 	 * Get the location of the dots
@@ -246,6 +318,14 @@ public interface Outline {
 	 */
 	Location getLocation();
 
+	/**
+	 * Get the latest snapshot of the outline.
+	 * A new snapshot is published each time the curves have been updated (not in the middle of an edit),
+	 * so this can be called from any thread and never sees a half finished change.
+	 * @return latest snapshot
+	 */
+	OutlineSnapshot getSnapshot();
+
 	/**
 	 * Add a property change listener
 	 * @param listener
@@ -0,0 +1,119 @@
+package com.billooms.outline.api;
+
+import com.billooms.drawables.PointList;
+import com.billooms.outline.api.Outline.Location;
+
+/**
+ * An unchanging copy of the state of an Outline at one moment.
+ * The outline publishes a new snapshot each time its curves have been updated,
+ * and any thread can read a consistent set of curves from it without locking the outline.
+ * The points can only be read, so a snapshot can be kept as long as needed.
+ * @author Bill Ooms. Copyright 2011 Studio of Bill Ooms. All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public final class OutlineSnapshot {
+	private final long version;
+	private final PointList dots;
+	private final PointList inside;
+	private final PointList outside;
+	private final double thickness;
+	private final double resolution;
+	private final Location location;
+
+	/**
+	 * Make a snapshot (this is done by the Outline).
+	 * The point arrays must not be changed after this.
+	 * @param version version number (higher for every change)
+	 * @param dots points of the dots
+	 * @param inside points of the inside curve
+	 * @param outside points of the outside curve
+	 * @param thickness thickness of the shape
+	 * @param resolution resolution of the curves
+	 * @param location location of the dots
+	 */
+	public OutlineSnapshot(long version, PointList dots, PointList inside, PointList outside,
+			double thickness, double resolution, Location location) {
+		this.version = version;
+		this.dots = dots;
+		this.inside = inside;
+		this.outside = outside;
+		this.thickness = thickness;
+		this.resolution = resolution;
+		this.location = location;
+	}
+
+	/**
+	 * Get the version of the snapshot.
+	 * Every update of the curves publishes a snapshot with a higher version.
+	 * @return version
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Get the points of the dots (bottom first).
+	 * @return points
+	 */
+	public PointList getDotPoints() {
+		return dots;
+	}
+
+	/**
+	 * Get the points of the inside curve (bottom first).
+	 * @return points
+	 */
+	public PointList getInsidePoints() {
+		return inside;
+	}
+
+	/**
+	 * Get the points of the outside curve (bottom first).
+	 * @return points
+	 */
+	public PointList getOutsidePoints() {
+		return outside;
+	}
+
+	/**
+	 * Get the thickness of the shape.
+	 * @return thickness in inches
+	 */
+	public double getThickness() {
+		return thickness;
+	}
+
+	/**
+	 * Get the resolution of the curves.
+	 * @return distance between points in inches
+	 */
+	public double getResolution() {
+		return resolution;
+	}
+
+	/**
+	 * Get the location of the dots.
+	 * @return location
+	 */
+	public Location getLocation() {
+		return location;
+	}
+
+	@Override
+	public String toString() {
+		return "OutlineSnapshot " + version + ": " + dots.size() + " dots, "
+				+ inside.size() + " inside, " + outside.size() + " outside";
+	}
+}
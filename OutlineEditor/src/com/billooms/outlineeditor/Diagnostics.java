@@ -0,0 +1,146 @@
+package com.billooms.outlineeditor;
+
+import com.billooms.metrics.api.Histogram;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.Map;
+import javax.swing.JFileChooser;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.filechooser.FileNameExtensionFilter;
+import org.openide.DialogDescriptor;
+import org.openide.DialogDisplayer;
+import org.openide.NotifyDescriptor;
+import org.openide.awt.ActionRegistration;
+import org.openide.awt.ActionReference;
+import org.openide.awt.ActionReferences;
+import org.openide.awt.ActionID;
+import org.openide.awt.StatusDisplayer;
+import org.openide.filesystems.FileChooserBuilder;
+import org.openide.util.NbBundle.Messages;
+
+/**
+ * Action to show the timings of the steps between an edit and the next frame,
+ * and save them as JSON.
+ * @author Bill Ooms Copyright (c) 2011 Studio of Bill Ooms all rights reserved
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@ActionID(category = "Edit",
+id = "com.billooms.outlineeditor.Diagnostics")
+@ActionRegistration(displayName = "#CTL_Diagnostics")
+@ActionReferences({
+	@ActionReference(path = "Menu/Outline", position = 3100, separatorBefore = 3000)
+})
+@Messages("CTL_Diagnostics=Diagnostics...")
+public final class Diagnostics implements ActionListener {
+	private final static String SAVE = "Save JSON...";
+	private final static String RESET = "Reset";
+	private final static String CLOSE = "Close";
+
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		Metrics metrics = MetricsLookup.getDefault();
+		JTextArea text = new JTextArea(report(metrics));
+		text.setEditable(false);
+		text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+		JScrollPane scroll = new JScrollPane(text);
+		scroll.setPreferredSize(new Dimension(640, 300));
+
+		DialogDescriptor d = new DialogDescriptor(scroll, "Diagnostics", true,
+				new Object[] {SAVE, RESET, CLOSE}, CLOSE, DialogDescriptor.DEFAULT_ALIGN, null, null);
+		while (true) {
+			Object result = DialogDisplayer.getDefault().notify(d);
+			if (SAVE.equals(result)) {
+				saveJSON(metrics);
+			} else if (RESET.equals(result)) {
+				metrics.reset();
+				text.setText(report(metrics));
+			} else {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Make a table of the stages and counters.
+	 * @param metrics metrics
+	 * @return text of the table (times in microseconds)
+	 */
+	private static String report(Metrics metrics) {
+		StringBuilder sb = new StringBuilder();
+		if (!metrics.isEnabled()) {
+			sb.append("Metrics are turned off (-Dbowlshape.metrics=false)\n\n");
+		}
+		sb.append(String.format("%-16s%10s%10s%10s%10s%10s%10s%n",
+				"stage (usec)", "count", "mean", "p50", "p99", "p99.9", "max"));
+		for (String stage : metrics.getStages()) {
+			Histogram h = metrics.getHistogram(stage);
+			sb.append(String.format("%-16s%10d%10.1f%10.1f%10.1f%10.1f%10.1f%n", stage, h.getCount(),
+					h.getMean() / 1000.0,
+					h.getValueAtPercentile(50.0) / 1000.0,
+					h.getValueAtPercentile(99.0) / 1000.0,
+					h.getValueAtPercentile(99.9) / 1000.0,
+					h.getMax() / 1000.0));
+		}
+		sb.append(String.format("%n%-16s%10s%n", "counter", "value"));
+		for (Map.Entry<String, Long> c : metrics.getCounters().entrySet()) {
+			sb.append(String.format("%-16s%10d%n", c.getKey(), c.getValue()));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Ask for a file and save the metrics in it as JSON.
+	 * @param metrics metrics
+	 */
+	private static void saveJSON(Metrics metrics) {
+		File home = new File (System.getProperty("user.home"));	//The default dir to use if no value is stored
+		JFileChooser chooser = new FileChooserBuilder("openfile")
+				.setTitle("Save Diagnostics")
+				.setDefaultWorkingDirectory(home)
+				.setApproveText("save")
+				.setFileFilter(new FileNameExtensionFilter("json files", "json"))
+				.createFileChooser();
+		chooser.setSelectedFile(new File("diagnostics.json"));
+		if (chooser.showSaveDialog(null) != JFileChooser.APPROVE_OPTION) {
+			return;										// User canceled or clicked the dialog's close box.
+		}
+		File saveFile = chooser.getSelectedFile();
+		if (!saveFile.toString().endsWith(".json")) {
+			saveFile = new File(saveFile.toString() + ".json");
+		}
+		PrintWriter out = null;
+		try {
+			out = new PrintWriter(saveFile);
+			out.print(metrics.toJSON());
+			StatusDisplayer.getDefault().setStatusText("Saved diagnostics to: " + saveFile.getName());
+		} catch (FileNotFoundException ex) {
+			NotifyDescriptor n = new NotifyDescriptor.Message("Could not write " + saveFile.getName() + "\n" + ex.getMessage(),
+					NotifyDescriptor.ERROR_MESSAGE);
+			DialogDisplayer.getDefault().notify(n);
+		} finally {
+			if (out != null) {
+				out.close();
+			}
+		}
+	}
+}
@@ -4,6 +4,8 @@ package com.billooms.outlineeditor;
 import com.billooms.drawables.BoundingBox;
 import com.billooms.drawables.Dot;
 import com.billooms.drawables.Grid;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import com.billooms.outline.api.Outline;
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -38,6 +40,7 @@ import org.openide.util.Lookup;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 public class OutlineEditPanel extends JPanel {
+	private final static Metrics METRICS = MetricsLookup.getDefault();
 	private final DecimalFormat F3 = new DecimalFormat("0.000");
 	
 	private Outline outline;
@@ -239,6 +242,7 @@ private void changeResolution(java.awt.event.ActionEvent evt) {//GEN-FIRST:event
 
 		@Override
 		protected void paintComponent(Graphics g) {
+			Metrics.Timer timer = METRICS.start(Metrics.PAINT);
 			super.paintComponent(g);
 
 			Graphics2D g2d = (Graphics2D) g;
@@ -249,6 +253,8 @@ private void changeResolution(java.awt.event.ActionEvent evt) {//GEN-FIRST:event
 						      (double) getWidth() / dpi, (double) getHeight() / dpi).paint(g2d);
 
 			outline.paint(g2d);		// paint the curves
+			timer.stop();
+			METRICS.markFrame();	// the edit is now on the screen
 		}
 
 		/**
@@ -2,6 +2,7 @@
 package com.billooms.view3d;
 
 import com.billooms.outline.api.Outline;
+import com.billooms.outline.api.CoalescingListener;
 import com.billooms.view3dmodel.Bowl;
 import java.awt.BorderLayout;
 import java.awt.Color;
@@ -48,6 +49,7 @@ public final class View3DTopComponent extends TopComponent {
 
 	private Outline outline = Lookup.getDefault().lookup(Outline.class);
 	private Bowl bowl;
+	private CoalescingListener bowlListener;	// limits drag updates of the bowl to the display rate
 	private DisplayPanel display;
 
 	private PrintProvider printProv;
@@ -58,6 +60,7 @@ public final class View3DTopComponent extends TopComponent {
 		setToolTipText(NbBundle.getMessage(View3DTopComponent.class, "HINT_View3DTopComponent"));
 
 		bowl = new Bowl();
+		bowlListener = new CoalescingListener(bowl);
 		display = new DisplayPanel(bowl);
 		add(display, BorderLayout.CENTER);
 
@@ -169,13 +172,13 @@ public final class View3DTopComponent extends TopComponent {
     // End of variables declaration//GEN-END:variables
 	@Override
 	public void componentOpened() {
-		outline.addPropertyChangeListener(bowl);
+		outline.addPropertyChangeListener(bowlListener);
 		bowl.propertyChange(null);		// force a recalculation
 	}
 
 	@Override
 	public void componentClosed() {
-		outline.removePropertyChangeListener(bowl);
+		outline.removePropertyChangeListener(bowlListener);
 	}
 
 	void writeProperties(java.util.Properties p) {
@@ -185,6 +188,9 @@ public final class View3DTopComponent extends TopComponent {
 		p.setProperty("grid", String.valueOf(display.isGridShowing()));
 		p.setProperty("backgroundColor", String.valueOf(display.getBackgroundColor().getRGB()));
 		p.setProperty("bowlColor", String.valueOf(bowl.getColor().getRGB()));
+		p.setProperty("sectors", String.valueOf(bowl.getSectors()));
+		p.setProperty("adaptive", String.valueOf(bowl.isAdaptive()));
+		p.setProperty("tolerance", String.valueOf(bowl.getTolerance()));
 	}
 
 	void readProperties(java.util.Properties p) {
@@ -202,5 +208,14 @@ public final class View3DTopComponent extends TopComponent {
 		if (s != null) {
 			bowl.setColor(new Color(Integer.parseInt(s)));
 		}
+		s = p.getProperty("sectors");
+		if (s != null) {
+			bowl.setSectors(Integer.parseInt(s));
+		}
+		s = p.getProperty("tolerance");
+		if (s != null) {
+			bowl.setTolerance(Double.parseDouble(s));
+		}
+		bowl.setAdaptive(p.getProperty("adaptive", "false").equals("true"));
 	}
 }
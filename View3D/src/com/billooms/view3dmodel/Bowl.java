@@ -1,12 +1,19 @@
 package com.billooms.view3dmodel;
 
+import com.billooms.drawables.PointList;
+import com.billooms.drawables.Pt;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 import com.billooms.outline.api.Outline;
+import com.billooms.outline.api.OutlineSnapshot;
 import java.awt.*;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.vecmath.*;
 import javax.media.j3d.*;
 import org.openide.util.Lookup;
+import org.openide.util.RequestProcessor;
 
 /**
  * A Bowl is a BranchGroup for 3D display
@@ -28,6 +35,16 @@ import org.openide.util.Lookup;
 public class Bowl implements PropertyChangeListener {
 	public final static int DEFAULT_SECTORS = 360;
 	public final static Color DEFAULT_BOWL_COLOR = new Color(186, 99, 18);
+	/** Default chord error in adaptive mode (currently set to 0.001) */
+	public final static double DEFAULT_TOLERANCE = 0.001;
+	/** Most radial sections used while a point is being dragged (currently set to 36) */
+	public final static int DRAG_SECTORS = 36;
+	/** Time after the last drag before the full number of sections is made in msec (currently set to 300) */
+	public final static int SETTLE_DELAY = 300;
+
+	private int sectors = DEFAULT_SECTORS;		// number of radial sections when not adaptive
+	private boolean adaptive = false;			// true: number of sections from maximum radius and tolerance
+	private double tolerance = DEFAULT_TOLERANCE;	// chord error in adaptive mode
 
 	private Material mat;			// material used for all of the bowl
 	private Color3f ambientColor = new Color3f(0.2f, 0.2f, 0.2f);		// from ambient light source
@@ -37,6 +54,23 @@ public class Bowl implements PropertyChangeListener {
 	
 
 	private Outline outline = Lookup.getDefault().lookup(Outline.class);	// the outline that controls the shape of the bowl
+	private final static Metrics METRICS = MetricsLookup.getDefault();
+
+	/** One thread for making the inside and outside geometry in the background */
+	private final static RequestProcessor RP = new RequestProcessor(Bowl.class.getName(), 1);
+	private final RequestProcessor.Task buildTask = RP.create(new Runnable() {
+		@Override
+		public void run() {
+			buildInOut();
+		}
+	});
+	private final AtomicReference<Build> latest = new AtomicReference<Build>();	// newest build wanted (null if none)
+	private final RequestProcessor.Task refineTask = RP.create(new Runnable() {
+		@Override
+		public void run() {
+			refineInOut();
+		}
+	});
 
 	/**
 	 *							bowlBG
@@ -70,7 +104,7 @@ public class Bowl implements PropertyChangeListener {
 		bowlBG.setCapability(BranchGroup.ALLOW_CHILDREN_EXTEND);	// Allow additions in real-time
 		bowlBG.setCapability(BranchGroup.ALLOW_DETACH);				// Allow deleting in real-time
 
-		makeInOut();
+		makeInOut(false);
 	}
 
     /**
@@ -100,36 +134,175 @@ public class Bowl implements PropertyChangeListener {
 		}
 	}
 
+	/**
+	 * Get the number of radial sections used when not adaptive.
+	 * @return number of radial sections
+	 */
+	public int getSectors() {
+		return sectors;
+	}
+
+	/**
+	 * Set the number of radial sections used when not adaptive.
+	 * @param n number of radial sections
+	 */
+	public void setSectors(int n) {
+		n = Math.max(LatheShape3D.MIN_SECTORS, Math.min(LatheShape3D.MAX_SECTORS, n));
+		if (n != sectors) {
+			sectors = n;
+			makeInOut(false);
+		}
+	}
+
+	/**
+	 * Determine if the number of radial sections is chosen from the maximum radius and tolerance.
+	 * @return true=adaptive, false=fixed number of sections
+	 */
+	public boolean isAdaptive() {
+		return adaptive;
+	}
+
+	/**
+	 * Set whether the number of radial sections is chosen from the maximum radius and tolerance.
+	 * @param a true=adaptive, false=fixed number of sections
+	 */
+	public void setAdaptive(boolean a) {
+		if (a != adaptive) {
+			adaptive = a;
+			makeInOut(false);
+		}
+	}
+
+	/**
+	 * Get the chord error used in adaptive mode.
+	 * @return maximum distance between a chord and the true circle
+	 */
+	public double getTolerance() {
+		return tolerance;
+	}
+
+	/**
+	 * Set the chord error used in adaptive mode.
+	 * @param t maximum distance between a chord and the true circle
+	 */
+	public void setTolerance(double t) {
+		if ((t > 0.0) && (t != tolerance)) {
+			tolerance = t;
+			if (adaptive) {
+				makeInOut(false);
+			}
+		}
+	}
+
+	/**
+	 * Get the full number of radial sections for the given points.
+	 * @param inPts inside points
+	 * @param outPts outside points
+	 * @return number of radial sections
+	 */
+	private int fullSectors(PointList inPts, PointList outPts) {
+		if (!adaptive) {
+			return sectors;
+		}
+		return LatheShape3D.sectorsFor(Math.max(maxRadius(inPts), maxRadius(outPts)), tolerance);
+	}
+
+	/**
+	 * Get the largest radius of the given points.
+	 * @param pts points
+	 * @return largest radius
+	 */
+	private static double maxRadius(PointList pts) {
+		double max = 0.0;
+		for (int i = 0; i < pts.size(); i++) {
+			max = Math.max(max, Math.abs(pts.getX(i)));
+		}
+		return max;
+	}
+
     /**
      * Make the inside and outside bowl shape from curves.
+     * @param coarse true: use no more than DRAG_SECTORS and refine after SETTLE_DELAY
      */
-	private void makeInOut() {
-		if ((outline.getInsideCurve().getSize() == 0) || 
-			(outline.getOutsideCurve().getSize() == 0)) {	// This is in case the last dot was just deleted
+	private void makeInOut(boolean coarse) {
+		OutlineSnapshot snap = outline.getSnapshot();	// the points of a snapshot never change
+		PointList inPts = snap.getInsidePoints();
+		PointList outPts = snap.getOutsidePoints();
+		if ((inPts.size() == 0) || 
+			(outPts.size() == 0)) {	// This is in case the last dot was just deleted
 			deleteInOut();
 			return;
 		}
-		if (insideShape == null) {
+		int nSect = fullSectors(inPts, outPts);
+		if (insideShape == null) {		// new shapes are empty until the background build makes their geometry
 			inOutBG = new BranchGroup();
 			inOutBG.setCapability(BranchGroup.ALLOW_CHILDREN_READ);		// Allow reading in real-time
 			inOutBG.setCapability(BranchGroup.ALLOW_CHILDREN_WRITE);	// Allow changes in real-time
 			inOutBG.setCapability(BranchGroup.ALLOW_CHILDREN_EXTEND);	// Allow additions in real-time
 			inOutBG.setCapability(BranchGroup.ALLOW_DETACH);			// Allow deleting in real-time
-			insideShape = new LatheShape3D(outline.getInsideCurve().getPoints(), mat);	// make the lathe shape primitive
+			insideShape = new LatheShape3D(mat);	// make the lathe shape primitive
 			inOutBG.addChild(insideShape);
-			outsideShape = new LatheShape3D(outline.getOutsideCurve().getPoints(), mat);	// make the lathe shape primitive
+			outsideShape = new LatheShape3D(mat);	// make the lathe shape primitive
 			inOutBG.addChild(outsideShape);
 			bowlBG.addChild(inOutBG);
+		}
+		if (coarse && (nSect > DRAG_SECTORS)) {
+			latest.set(new Build(insideShape, inPts, outsideShape, outPts, DRAG_SECTORS, nSect));
+			refineTask.schedule(SETTLE_DELAY);	// put off until dragging stops
 		} else {
-			insideShape.makeGeom(outline.getInsideCurve().getPoints());
-			outsideShape.makeGeom(outline.getOutsideCurve().getPoints());
-        }
+			latest.set(new Build(insideShape, inPts, outsideShape, outPts, nSect, nSect));
+		}
+		buildTask.schedule(0);	// a build that hasn't started yet only runs once
+	}
+
+	/**
+	 * Rebuild the latest coarse build with the full number of radial sections.
+	 */
+	private void refineInOut() {
+		Build build = latest.get();
+		if ((build != null) && (build.nSect != build.fullSect)) {
+			if (latest.compareAndSet(build, new Build(build.inShape, build.inPts, build.outShape, build.outPts, build.fullSect, build.fullSect))) {
+				buildInOut();
+			}
+		}
+	}
+
+	/**
+	 * Update the geometry of the shapes for the latest build on the background thread.
+	 * Java3D swaps in each new geometry in a single step.
+	 * A build is abandoned as soon as a newer one is wanted.
+	 * A finished build counts as a new 3D frame for the edit latency.
+	 */
+	private void buildInOut() {
+		Build build = latest.get();
+		if (build == null) {
+			return;
+		}
+		Metrics.Timer timer = METRICS.start(Metrics.BUILD_3D);
+		build.inShape.makeGeom(build.inPts, build.nSect);
+		if (latest.get() != build) {
+			return;				// stale, a newer build is scheduled
+		}
+		build.outShape.makeGeom(build.outPts, build.nSect);
+		timer.stop(build.inPts.size() + build.outPts.size(), 0.0, 0.0, build.nSect);
+		if (latest.get() == build) {
+			METRICS.markFrame3D();
+		}
+	}
+
+	/**
+	 * Wait until the geometry for the latest change has been made.
+	 * This is for measuring how long a rebuild takes.
+	 */
+	void waitForBuild() {
+		buildTask.waitFinished();
 	}
 
 	/**
 	 * Detach the inOutBG and set insideShape=null and outsideShape=null.
 	 */
     private void deleteInOut() {
+		latest.set(null);
         if (inOutBG != null) {
 			inOutBG.detach();
 			insideShape = null;
@@ -149,7 +322,27 @@ public class Bowl implements PropertyChangeListener {
 		if (evtName.equals(Outline.PROP_CLEAR)) {	// special case when the outline is cleared
 			deleteInOut();
 		}
-		makeInOut();
+		makeInOut(evtName.equals(Pt.PROP_DRAG));	// coarse while dragging
 	}
 
+	/**
+	 * The shapes and copies of their points for one background build.
+	 */
+	private static class Build {
+		final LatheShape3D inShape;
+		final PointList inPts;
+		final LatheShape3D outShape;
+		final PointList outPts;
+		final int nSect;		// number of radial sections for this build
+		final int fullSect;		// number of radial sections once refined
+
+		Build(LatheShape3D inShape, PointList inPts, LatheShape3D outShape, PointList outPts, int nSect, int fullSect) {
+			this.inShape = inShape;
+			this.inPts = inPts;
+			this.outShape = outShape;
+			this.outPts = outPts;
+			this.nSect = nSect;
+			this.fullSect = fullSect;
+		}
+	}
 }
@@ -1,9 +1,13 @@
 package com.billooms.view3dmodel;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 import javax.media.j3d.*;
-import javax.vecmath.*;
-import com.sun.j3d.utils.geometry.*;
-import java.awt.geom.Point2D;
+import com.billooms.drawables.PointList;
+import com.billooms.metrics.api.Metrics;
+import com.billooms.metrics.api.MetricsLookup;
 
 /**
  * Creates a lathe shape from a given array of points representing the profile.
@@ -23,16 +27,52 @@ import java.awt.geom.Point2D;
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 public class LatheShape3D extends Shape3D {
-    private final static int NSECT = 36;	// the number of radial sections (every 10 degrees)
-    
-	private int numpts;						// total number of points in the shape
+    /** Default number of radial sections (currently set to 36, every 10 degrees) */
+    public final static int DEFAULT_SECTORS = 36;
+    /** Fewest radial sections used for any shape (currently set to 8) */
+    public final static int MIN_SECTORS = 8;
+    /** Most radial sections used for any shape (currently set to 1440) */
+    public final static int MAX_SECTORS = 1440;
+
+    private final static Metrics METRICS = MetricsLookup.getDefault();
+
+    private IndexedTriangleStripArray geom = null;	// geometry with data by reference (null until first made)
+    private int geomSect = 0;				// number of radial sections in geom
+    private int vertCapacity = 0;			// number of vertices the buffers can hold
+    private int indexCapacity = 0;			// number of indices the index array can hold
+    private FloatBuffer coordBuf;			// coordinates used by reference in geom
+    private FloatBuffer normalBuf;			// normals used by reference in geom
+    private int[] indexRef;					// indices used by reference in geom
+    private float[] coords = new float[0];	// coordinates for the next update
+    private float[] normals = new float[0];	// normals for the next update
+    private int[] indices = new int[0];		// indices for the next update
 
     /**
      * Creates a lathe shape from a given array of points representing the profile.
-     * @param pts An array of Point2D which defines the outline. First point is the bottom.
+     * @param pts Points which define the outline. First point is the bottom.
+     * @param mat Material to define the appearance
+     */
+    public LatheShape3D(PointList pts, Material mat) {
+        this(pts, DEFAULT_SECTORS, mat);
+    }
+
+    /**
+     * Creates a lathe shape from a given array of points representing the profile.
+     * @param pts Points which define the outline. First point is the bottom.
+     * @param nSect number of radial sections
+     * @param mat Material to define the appearance
+     */
+    public LatheShape3D(PointList pts, int nSect, Material mat) {
+        this(mat);
+		makeGeom(pts, nSect);		// Make the geometry of the shape
+    }
+
+    /**
+     * Creates a lathe shape with no geometry yet, so it shows nothing until makeGeom is called.
+     * This lets the mesh be made on another thread after the shape is added to the scene.
      * @param mat Material to define the appearance
      */
-    public LatheShape3D(Point2D.Double[] pts, Material mat) {
+    public LatheShape3D(Material mat) {
         setCapability(Shape3D.ALLOW_GEOMETRY_WRITE);
 
         // Create appearance
@@ -44,58 +84,274 @@ public class LatheShape3D extends Shape3D {
         app.setPolygonAttributes(pa);
         app.setMaterial(mat);
         setAppearance(app);
+    }
+
+    /**
+     * Get the number of radial sections so that the chords around the largest radius
+     * are no further than the given tolerance from the true circle.
+     * @param maxRadius largest radius of the shape
+     * @param tolerance maximum distance between a chord and the circle
+     * @return number of radial sections (between MIN_SECTORS and MAX_SECTORS)
+     */
+    public static int sectorsFor(double maxRadius, double tolerance) {
+        if ((maxRadius <= 0.0) || (tolerance <= 0.0)) {
+            return (maxRadius <= 0.0) ? MIN_SECTORS : MAX_SECTORS;
+        }
+        if (tolerance >= maxRadius) {
+            return MIN_SECTORS;
+        }
+        double n = Math.PI / Math.acos(1.0 - tolerance / maxRadius);	// sagitta = r(1 - cos(pi/n))
+        return (int) Math.max(MIN_SECTORS, Math.min(MAX_SECTORS, Math.ceil(n)));
+    }
+
+    /**
+     * Get the number of radial sections currently in the shape.
+     * @return number of radial sections
+     */
+    public synchronized int getSectors() {
+        return geomSect;
+    }
+
+    /**
+     * Create the geometry of the shape.
+     * The coordinates are calculated first, then copied into the geometry in place 
+     * with a GeometryUpdater. A new geometry is only made when the old one is too small.
+     * This can be called from any thread (but only one at a time).
+     * @param pts Points which define the outline. First point is the bottom.
+     * @param nSect number of radial sections
+     */
+    public final synchronized void makeGeom(PointList pts, int nSect) {
+        Metrics.Timer timer = METRICS.start(Metrics.MAKE_GEOM);
+        nSect = Math.max(MIN_SECTORS, Math.min(MAX_SECTORS, nSect));
+        final int nVerts = 1 + nSect + pts.size() * nSect;	// center, bottom circle, and a ring for each point
+        final int nIndices = 2 * nSect + 1 + (pts.size() - 1) * 2 * (nSect + 1);
+        if (coords.length < 3 * nVerts) {
+            coords = new float[3 * (nVerts + (nVerts >> 1))];
+            normals = new float[coords.length];
+        }
+        if (indices.length < nIndices) {
+            indices = new int[nIndices + (nIndices >> 1)];
+        }
+        SectorTable table = SectorTable.get(nSect);
+        makeCoords(pts, table, coords);
+        makeNormals(pts, table, normals);
+        makeIndices(pts.size(), nSect, indices);
+
+        if ((geom == null) || (nSect != geomSect) || (nVerts > vertCapacity) || (nIndices > indexCapacity)) {
+            allocate(nVerts + (nVerts >> 1), nIndices + (nIndices >> 1), nSect);	// room to grow by 50%
+            fill(nVerts, nIndices);
+            setGeometry(geom);				// new geometry replaces the old one in a single step
+        } else {
+            geom.updateData(new GeometryUpdater() {
+                @Override
+                public void updateData(Geometry geometry) {
+                    fill(nVerts, nIndices);	// Java3D won't use the data while this runs
+                }
+            });
+        }
+        timer.stop(pts.size(), 0.0, 0.0, nSect);
+    }
+
+    /**
+     * Make a new geometry with direct buffers of the given capacity.
+     * @param nVerts number of vertices
+     * @param nIndices number of indices
+     * @param nSect number of radial sections
+     */
+    private void allocate(int nVerts, int nIndices, int nSect) {
+        geomSect = nSect;
+        vertCapacity = nVerts;
+        indexCapacity = nIndices;
+        coordBuf = ByteBuffer.allocateDirect(4 * 3 * nVerts).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        normalBuf = ByteBuffer.allocateDirect(4 * 3 * nVerts).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        indexRef = new int[nIndices];
+        geom = makeGeometryArray(nVerts, nIndices, nSect, coordBuf, normalBuf, indexRef);
+    }
 
-		makeGeom(pts);		// Make the geometry of the shape
+    /**
+     * Make a geometry that uses the given buffers and indices by reference.
+     * This doesn't need a Canvas3D or a display.
+     * @param nVerts number of vertices the buffers can hold
+     * @param nIndices number of indices
+     * @param nSect number of radial sections
+     * @param coordBuf direct buffer for the coordinates
+     * @param normalBuf direct buffer for the normals
+     * @param indexRef array for the indices
+     * @return new geometry
+     */
+    static IndexedTriangleStripArray makeGeometryArray(int nVerts, int nIndices, int nSect, 
+            FloatBuffer coordBuf, FloatBuffer normalBuf, int[] indexRef) {
+        int[] stripCounts = {2 * nSect + 1, nIndices - (2 * nSect + 1)};	// bottom circle, then the sides
+        IndexedTriangleStripArray ga = new IndexedTriangleStripArray(nVerts, 
+                GeometryArray.COORDINATES | GeometryArray.NORMALS | GeometryArray.BY_REFERENCE 
+                | GeometryArray.USE_NIO_BUFFER | GeometryArray.USE_COORD_INDEX_ONLY | GeometryArray.BY_REFERENCE_INDICES, 
+                nIndices, stripCounts);
+        ga.setCapability(GeometryArray.ALLOW_REF_DATA_WRITE);
+        ga.setCoordRefBuffer(new J3DBuffer(coordBuf));
+        ga.setNormalRefBuffer(new J3DBuffer(normalBuf));
+        ga.setCoordIndicesRef(indexRef);
+        return ga;
     }
 
     /**
-     * Create the geometry of the shape
-     * @param pts An array of Point2d which defines the outline. First point is the bottom.
+     * Copy the new coordinates, normals, and indices into the geometry.
+     * Indices past the end all repeat the last index so they make no triangles.
+     * @param nVerts number of vertices
+     * @param nIndices number of indices
      */
-    protected final void makeGeom(Point2D.Double[] pts) {
-        numpts = (pts.length-1) * (2*NSECT + 2) + 3*NSECT;
-
-        // Create coordinates
-        Point3d[] coords = makeCoords(pts);
-
-        // Create geometry
-        int stripCounts[] = {numpts};				// points are in one strip of numpts
-        GeometryInfo gi = new GeometryInfo(GeometryInfo.TRIANGLE_STRIP_ARRAY);
-        gi.setCoordinates(coords);
-        gi.setStripCounts(stripCounts);
-        NormalGenerator ng = new NormalGenerator();
-        ng.generateNormals(gi);
-        setGeometry(gi.getGeometryArray());
+    private void fill(int nVerts, int nIndices) {
+        coordBuf.clear();
+        coordBuf.put(coords, 0, 3 * nVerts);
+        normalBuf.clear();
+        normalBuf.put(normals, 0, 3 * nVerts);
+        System.arraycopy(indices, 0, indexRef, 0, nIndices);
+        Arrays.fill(indexRef, nIndices, indexCapacity, indices[nIndices - 1]);
+    }
+
+    /**
+     * Make the coordinates in 3D space.
+     * Vertex 0 is the center of the bottom, then the bottom circle, then a ring for each point.
+     * @param pts Points which define the outline. First point is the bottom.
+     * @param table sines and cosines for the sectors
+     * @param coords array to fill with x,y,z of each vertex
+     */
+    static void makeCoords(PointList pts, SectorTable table, float[] coords) {
+        float[] cos = table.cos;
+        float[] sin = table.sin;
+        int nSect = table.n;
+
+        int idx = 0;
+        float botRadius = (float) pts.getX(0);			// first point is the bottom
+        float botHeight = (float) pts.getY(0);
+        coords[idx] = 0.0f;								// center of the bottom
+        coords[idx + 1] = botHeight;
+        coords[idx + 2] = 0.0f;
+        idx += 3;
+        for (int j = 0; j < nSect; j++) {               // make the bottom circle
+            coords[idx] = botRadius * cos[j];
+            coords[idx + 1] = botHeight;
+            coords[idx + 2] = botRadius * sin[j];
+            idx += 3;
+        }
+
+        for (int i = 0; i < pts.size(); i++) {
+            float r = (float) pts.getX(i);
+            float y = (float) pts.getY(i);
+            for (int j = 0; j < nSect; j++) {
+                coords[idx] = r * cos[j];
+                coords[idx + 1] = y;
+                coords[idx + 2] = r * sin[j];
+                idx += 3;
+            }
+        }
     }
 
     /**
-     * Make the coordinates in 3D space
-     * @param pts An array of Point2d which defines the outline. First point is the bottom.
-     * @return an array of 3D points
+     * Make the normal at each coordinate made by makeCoords().
+     * The bottom points straight down. On the sides, the surface normal is 
+     * the normal of the profile rotated by the same angle as the point.
+     * @param pts Points which define the outline. First point is the bottom.
+     * @param table sines and cosines for the sectors
+     * @param normals array to fill with x,y,z of the normal at each vertex
      */
-    private Point3d[] makeCoords(Point2D.Double[] pts) {
-        double phi;
-        double dPhi = 2 * Math.PI / NSECT;				// angle increment in radians
-        Point3d[] coords = new Point3d[numpts];
+    static void makeNormals(PointList pts, SectorTable table, float[] normals) {
+        float[] cos = table.cos;
+        float[] sin = table.sin;
+        int nSect = table.n;
 
         int idx = 0;
-        double botRadius = pts[0].x;					// first point is the bottom
-        double botHeight = pts[0].y;
-        for (int j = 0; j < NSECT; j++) {               // make the bottom circle
-            phi = j * dPhi;
-            coords[idx] = new Point3d(0.0, botHeight, 0.0);
-            coords[idx + 1] = new Point3d(botRadius * Math.cos(phi), botHeight, botRadius * Math.sin(phi));
-            coords[idx + 2] = new Point3d(botRadius * Math.cos(phi + dPhi), botHeight, botRadius * Math.sin(phi + dPhi));
-            idx = idx + 3;
+        for (int j = 0; j <= nSect; j++) {				// center and bottom circle
+            normals[idx] = 0.0f;
+            normals[idx + 1] = -1.0f;
+            normals[idx + 2] = 0.0f;
+            idx += 3;
         }
-        for (int i = 0; i < pts.length - 1; i++) {
-            for (int j = 0; j <= NSECT; j++) {
-                phi = j * dPhi;
-                coords[idx] = new Point3d(pts[i].x * Math.cos(phi), pts[i].y, pts[i].x * Math.sin(phi));
-                coords[idx + 1] = new Point3d(pts[i + 1].x * Math.cos(phi), pts[i + 1].y, pts[i + 1].x * Math.sin(phi));
-                idx = idx + 2;
+
+        int last = pts.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            int prev = Math.max(i - 1, 0);
+            int next = Math.min(i + 1, last);
+            double dx = pts.getX(next) - pts.getX(prev);	// tangent of the profile
+            double dy = pts.getY(next) - pts.getY(prev);
+            double len = Math.hypot(dx, dy);
+            float nr = 1.0f;							// no tangent, so just point outwards
+            float ny = 0.0f;
+            if (len != 0.0) {
+                nr = (float) (dy / len);				// perpendicular to the tangent
+                ny = (float) (-dx / len);
+            }
+            for (int j = 0; j < nSect; j++) {
+                normals[idx] = nr * cos[j];
+                normals[idx + 1] = ny;
+                normals[idx + 2] = nr * sin[j];
+                idx += 3;
+            }
+        }
+    }
+
+    /**
+     * Make the strip indices into the vertices made by makeCoords().
+     * The bottom circle is a strip that alternates between the circle and the center 
+     * (every other triangle has no area). 
+     * The sides are one strip that goes all the way around between each pair of rings, 
+     * then continues from the upper ring (the triangles joining them have no area).
+     * @param nRings number of profile points
+     * @param nSect number of radial sections
+     * @param indices array to fill with the indices
+     */
+    static void makeIndices(int nRings, int nSect, int[] indices) {
+        int idx = 0;
+        for (int j = 0; j < nSect; j++) {				// bottom circle
+            indices[idx++] = 1 + j;
+            indices[idx++] = 0;
+        }
+        indices[idx++] = 1;								// close the circle
+
+        for (int i = 0; i < nRings - 1; i++) {
+            int ring0 = 1 + nSect + i * nSect;			// first vertex of the lower ring
+            int ring1 = ring0 + nSect;					// first vertex of the upper ring
+            for (int j = 0; j <= nSect; j++) {
+                int k = (j == nSect) ? 0 : j;			// back to the start to close the ring
+                indices[idx++] = ring0 + k;
+                indices[idx++] = ring1 + k;
+            }
+        }
+    }
+
+    /**
+     * Sines and cosines of the angle at the start of each sector.
+     * The table for the last number of sectors is kept so it's only calculated once.
+     */
+    static class SectorTable {
+        private static volatile SectorTable last = null;	// most recently used table
+
+        final int n;
+        final float[] cos;
+        final float[] sin;
+
+        private SectorTable(int n) {
+            this.n = n;
+            cos = new float[n];
+            sin = new float[n];
+            double dPhi = 2 * Math.PI / n;				// angle increment in radians
+            for (int j = 0; j < n; j++) {
+                cos[j] = (float) Math.cos(j * dPhi);
+                sin[j] = (float) Math.sin(j * dPhi);
+            }
+        }
+
+        /**
+         * Get the table for the given number of sectors.
+         * @param n number of sectors
+         * @return table
+         */
+        static SectorTable get(int n) {
+            SectorTable t = last;
+            if ((t == null) || (t.n != n)) {
+                t = new SectorTable(n);
+                last = t;
             }
+            return t;
         }
-        return coords;
     }
 }